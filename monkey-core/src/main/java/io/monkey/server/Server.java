@@ -23,6 +23,8 @@ import io.monkey.setup.Environment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 /**
  * @author michael
  */
@@ -32,9 +34,12 @@ public abstract class Server extends ContainerLifeCycle {
 
     private final Injector injector;
 
+    private final List<ServerLifecycleListener> lifecycleListeners;
+
     public Server(Environment environment) {
         environment.lifecycle().attach(this);
         this.injector = environment.getInjector();
+        this.lifecycleListeners = environment.getServerLifecycleListeners();
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try {
                 this.stop();
@@ -58,6 +63,7 @@ public abstract class Server extends ContainerLifeCycle {
     @Override
     protected final void doStop() throws Exception {
         Stopwatch sw = Stopwatch.createStarted();
+        this.drain();
         super.doStop();
         this.shutdown();
         sw.stop();
@@ -72,6 +78,26 @@ public abstract class Server extends ContainerLifeCycle {
      */
     protected void boot() throws Exception {}
 
+    /**
+     * let in-flight requests complete, before the managed objects are stopped
+     *
+     */
+    protected void drain() throws Exception {}
+
+    /**
+     * notify the listeners that the server refuses new requests and waits for the in-flight ones
+     *
+     */
+    protected void fireServerDraining() {
+        for (ServerLifecycleListener listener : lifecycleListeners) {
+            try {
+                listener.serverDraining(this);
+            } catch (RuntimeException e) {
+                logger.warn("Failure during notify server draining", e);
+            }
+        }
+    }
+
     /**
      * shutdown the real server
      *
@@ -30,5 +30,12 @@ public interface ServerLifecycleListener extends EventListener {
      */
     void serverStarted(Server server);
 
+    /**
+     * notify when server stopped taking new requests and waits for the in-flight ones, e.g. to end
+     * long-lived responses which would otherwise hold the shutdown for the whole grace period
+     * @param server
+     */
+    default void serverDraining(Server server) {
+    }
 
 }
@@ -27,7 +27,9 @@ import javax.annotation.Nullable;
 import javax.validation.ConstraintValidatorFactory;
 import javax.validation.Validator;
 import javax.validation.ValidatorFactory;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -51,6 +53,8 @@ public class Environment {
     private final ExecutorService healthCheckExecutorService;
     private final ClassLoader classLoader;
 
+    private final List<ServerLifecycleListener> serverLifecycleListeners = new CopyOnWriteArrayList<>();
+
     private GuicifyEnvironment guicifyEnvironment;
 
     private Injector injector;
@@ -202,6 +206,7 @@ public class Environment {
     }
 
     public void addServerLifecycleListener(final ServerLifecycleListener lifecycleListener) {
+        serverLifecycleListeners.add(lifecycleListener);
         lifecycleEnvironment.addLifeCycleListener(new AbstractLifeCycleListener() {
             @Override
             public void lifeCycleStarted(LifeCycle event) {
@@ -212,6 +217,10 @@ public class Environment {
         });
     }
 
+    public List<ServerLifecycleListener> getServerLifecycleListeners() {
+        return serverLifecycleListeners;
+    }
+
     public GuicifyEnvironment guicify() {
         checkCommited();
         return guicifyEnvironment;
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.ebean.setup;
+
+import io.ebean.event.BeanQueryAdapter;
+import io.ebean.event.BeanQueryRequest;
+import io.ebeaninternal.api.SpiQuery;
+import io.monkey.util.Deadline;
+import io.monkey.util.DeadlineExceededException;
+
+/**
+ * Bounds the timeout of ORM queries by the {@link Deadline} of the current request, and fails
+ * queries issued once the deadline has passed.
+ */
+class DeadlineQueryAdapter implements BeanQueryAdapter {
+
+    @Override
+    public boolean isRegisterFor(Class<?> cls) {
+        return true;
+    }
+
+    @Override
+    public int getExecutionOrder() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void preQuery(BeanQueryRequest<?> request) {
+        final Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return;
+        }
+
+        if (deadline.isExpired()) {
+            throw new DeadlineExceededException();
+        }
+
+        final SpiQuery<?> query = (SpiQuery<?>) request.getQuery();
+        final int remaining = deadline.remainingSeconds();
+        if (query.getTimeout() <= 0 || remaining < query.getTimeout()) {
+            query.setTimeout(remaining);
+        }
+    }
+}
@@ -47,6 +47,7 @@ class ServerConfigFactory {
         serverConfig.setDataSource(dataSource);
         serverConfig.setDefaultServer(dbConfig.isDefault());
         serverConfig.setRegister(true);
+        serverConfig.add(new DeadlineQueryAdapter());
 
         environment.lifecycle().manage(new Managed() {
             @Override
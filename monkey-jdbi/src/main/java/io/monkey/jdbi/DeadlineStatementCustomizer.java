@@ -0,0 +1,34 @@
+package io.monkey.jdbi;
+
+import io.monkey.util.Deadline;
+import io.monkey.util.DeadlineExceededException;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Bounds the query timeout of every statement by the {@link Deadline} of the current request, and
+ * fails statements issued once the deadline has passed.
+ */
+public class DeadlineStatementCustomizer implements StatementCustomizer {
+
+    @Override
+    public void beforeExecution(PreparedStatement stmt, StatementContext ctx) throws SQLException {
+        final Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return;
+        }
+
+        if (deadline.isExpired()) {
+            throw new DeadlineExceededException("request deadline exceeded before " + ctx.getRawSql());
+        }
+
+        final int remaining = deadline.remainingSeconds();
+        final int timeout = stmt.getQueryTimeout();
+        if (timeout == 0 || remaining < timeout) {
+            stmt.setQueryTimeout(remaining);
+        }
+    }
+}
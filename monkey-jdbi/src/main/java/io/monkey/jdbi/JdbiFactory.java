@@ -65,6 +65,9 @@ public class JdbiFactory {
         // Setup the timing collector
         jdbi.setTimingCollector(new InstrumentedTimingCollector(environment.metrics(), nameStrategy));
 
+        // Bound query timeouts by the deadline of the current request
+        jdbi.addCustomizer(new DeadlineStatementCustomizer());
+
         if (configuration.isAutoCommentsEnabled()) {
             final TemplateEngine original = jdbi.getConfig(SqlStatements.class).getTemplateEngine();
             jdbi.setTemplateEngine(new NamePrependingTemplateEngine(original));
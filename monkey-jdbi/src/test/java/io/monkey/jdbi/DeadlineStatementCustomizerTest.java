@@ -0,0 +1,55 @@
+package io.monkey.jdbi;
+
+import io.monkey.util.Deadline;
+import io.monkey.util.DeadlineExceededException;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+public class DeadlineStatementCustomizerTest {
+    private final DeadlineStatementCustomizer customizer = new DeadlineStatementCustomizer();
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final StatementContext context = mock(StatementContext.class);
+
+    @Test
+    public void leavesStatementsWithoutDeadlineAlone() throws Exception {
+        customizer.beforeExecution(statement, context);
+
+        verifyZeroInteractions(statement);
+    }
+
+    @Test
+    public void boundsTheQueryTimeoutByTheDeadline() throws Exception {
+        when(statement.getQueryTimeout()).thenReturn(30);
+
+        try (Deadline.Scope ignored = Deadline.attach(Deadline.after(5, TimeUnit.SECONDS))) {
+            customizer.beforeExecution(statement, context);
+        }
+
+        verify(statement).setQueryTimeout(5);
+    }
+
+    @Test
+    public void keepsAShorterQueryTimeout() throws Exception {
+        when(statement.getQueryTimeout()).thenReturn(2);
+
+        try (Deadline.Scope ignored = Deadline.attach(Deadline.after(5, TimeUnit.SECONDS))) {
+            customizer.beforeExecution(statement, context);
+        }
+
+        verify(statement, never()).setQueryTimeout(anyInt());
+    }
+
+    @Test
+    public void failsStatementsPastTheDeadline() throws Exception {
+        try (Deadline.Scope ignored = Deadline.attach(Deadline.at(System.nanoTime() - 1))) {
+            assertThatThrownBy(() -> customizer.beforeExecution(statement, context))
+                .isInstanceOf(DeadlineExceededException.class);
+        }
+    }
+}
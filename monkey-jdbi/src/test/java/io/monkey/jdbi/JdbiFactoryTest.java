@@ -50,6 +50,7 @@ public class JdbiFactoryTest {
         assertThat(result).isSameAs(jdbi);
         verify(lifecycle).manage(dataSource);
         verify(jdbi).setTimingCollector(any(InstrumentedTimingCollector.class));
+        verify(jdbi).addCustomizer(any(DeadlineStatementCustomizer.class));
         verify(jdbi).setTemplateEngine(any(NamePrependingTemplateEngine.class));
         verify(factory).configure(jdbi);
     }
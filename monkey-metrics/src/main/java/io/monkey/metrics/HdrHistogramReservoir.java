@@ -0,0 +1,168 @@
+package io.monkey.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Reservoir} backed by an HdrHistogram {@link Recorder}.
+ * <p/>
+ * Recording a value is wait-free and does not allocate (unless the histogram has to grow to cover a
+ * larger value range), which makes it suitable for timers on hot request paths. Snapshots cover a
+ * rolling window made of a few intervals, the oldest of which is dropped as a new one starts, so
+ * that percentiles follow the recent latency rather than the whole lifetime of the process. The
+ * values recorded between two snapshots are counted in the interval of the later one.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+
+    private final Recorder recorder;
+    private final Histogram[] intervals;
+    private final long intervalNanos;
+    private final Clock clock;
+    private Histogram intervalHistogram;
+    private int current;
+    private long currentStart;
+
+    /**
+     * Creates a reservoir with an auto-resizing histogram of 2 significant value digits, over a
+     * window of one minute made of four 15 second intervals.
+     */
+    public HdrHistogramReservoir() {
+        this(new Recorder(2), 4, 15, TimeUnit.SECONDS, Clock.defaultClock());
+    }
+
+    /**
+     * @param recorder  the recorder of the values
+     * @param intervals the number of intervals in the window
+     * @param interval  the duration of an interval
+     * @param unit      the unit of {@code interval}
+     * @param clock     the clock whose ticks delimit the intervals
+     */
+    public HdrHistogramReservoir(Recorder recorder, int intervals, long interval, TimeUnit unit, Clock clock) {
+        if (intervals < 1 || interval < 1) {
+            throw new IllegalArgumentException("Invalid window: " + intervals + " intervals of " + interval + " " + unit);
+        }
+        this.recorder = recorder;
+        this.intervalHistogram = recorder.getIntervalHistogram();
+        this.intervals = new Histogram[intervals];
+        for (int i = 0; i < intervals; i++) {
+            this.intervals[i] = intervalHistogram.copy();
+        }
+        this.intervalNanos = unit.toNanos(interval);
+        this.clock = clock;
+        this.currentStart = clock.getTick();
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(long value) {
+        recorder.recordValue(value);
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        return new HistogramSnapshot(updateWindow());
+    }
+
+    private synchronized Histogram updateWindow() {
+        final long elapsed = (clock.getTick() - currentStart) / intervalNanos;
+        if (elapsed > 0) {
+            for (long i = Math.min(elapsed, intervals.length); i > 0; i--) {
+                current = (current + 1) % intervals.length;
+                intervals[current].reset();
+            }
+            currentStart += elapsed * intervalNanos;
+        }
+
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        intervals[current].add(intervalHistogram);
+
+        final Histogram window = intervals[current].copy();
+        for (int i = 0; i < intervals.length; i++) {
+            if (i != current) {
+                window.add(intervals[i]);
+            }
+        }
+        return window;
+    }
+
+    private static final class HistogramSnapshot extends Snapshot {
+
+        private final Histogram histogram;
+
+        HistogramSnapshot(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            return histogram.getValueAtPercentile(quantile * 100.0);
+        }
+
+        /**
+         * Returns the distinct (bucketed) values recorded, not one entry per recorded value.
+         */
+        @Override
+        public long[] getValues() {
+            int distinct = 0;
+            for (HistogramIterationValue ignored : histogram.recordedValues()) {
+                distinct++;
+            }
+            long[] values = new long[distinct];
+            int i = 0;
+            for (HistogramIterationValue value : histogram.recordedValues()) {
+                values[i++] = value.getValueIteratedTo();
+            }
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(histogram.getTotalCount(), Integer.MAX_VALUE);
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getMaxValue();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getMean();
+        }
+
+        @Override
+        public long getMin() {
+            return histogram.getMinValue();
+        }
+
+        @Override
+        public double getStdDev() {
+            return histogram.getStdDeviation();
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (HistogramIterationValue value : histogram.recordedValues()) {
+                    for (long i = 0; i < value.getCountAtValueIteratedTo(); i++) {
+                        out.printf("%d%n", value.getValueIteratedTo());
+                    }
+                }
+            }
+        }
+    }
+}
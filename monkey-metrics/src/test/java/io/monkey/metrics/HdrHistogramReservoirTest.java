@@ -0,0 +1,86 @@
+package io.monkey.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Recorder;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class HdrHistogramReservoirTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final HdrHistogramReservoir reservoir =
+        new HdrHistogramReservoir(new Recorder(2), 4, 15, TimeUnit.SECONDS, clock);
+
+    @Test
+    public void emptyReservoirHasEmptySnapshot() {
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertThat(snapshot.size()).isZero();
+        assertThat(snapshot.getMax()).isZero();
+        assertThat(snapshot.getValues()).isEmpty();
+    }
+
+    @Test
+    public void snapshotsAccumulateRecordedValues() {
+        for (long i = 1; i <= 100; i++) {
+            reservoir.update(i);
+        }
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(100);
+
+        reservoir.update(1000);
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertThat(snapshot.size()).isEqualTo(101);
+        assertThat(snapshot.getMin()).isEqualTo(1);
+        assertThat(snapshot.getMax()).isCloseTo(1000L, within(10L));
+        assertThat(snapshot.getMedian()).isCloseTo(51, within(1.0));
+        assertThat(snapshot.get99thPercentile()).isCloseTo(100, within(1.0));
+    }
+
+    @Test
+    public void snapshotsOnlyCoverTheWindow() {
+        for (long i = 1; i <= 100; i++) {
+            reservoir.update(i);
+        }
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(100);
+
+        clock.advance(45, TimeUnit.SECONDS);
+        reservoir.update(1000);
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(101);
+
+        clock.advance(15, TimeUnit.SECONDS);
+        reservoir.update(2000);
+        final Snapshot snapshot = reservoir.getSnapshot();
+
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.getMin()).isCloseTo(1000L, within(10L));
+    }
+
+    @Test
+    public void dropsEverythingAfterALongPause() {
+        reservoir.update(10);
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(1);
+
+        clock.advance(10, TimeUnit.MINUTES);
+
+        assertThat(reservoir.getSnapshot().size()).isZero();
+    }
+
+    private static final class ManualClock extends Clock {
+        private long tick;
+
+        void advance(long duration, TimeUnit unit) {
+            tick += unit.toNanos(duration);
+        }
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.motan.filter;
+
+import com.weibo.api.motan.common.MotanConstants;
+import com.weibo.api.motan.core.extension.Activation;
+import com.weibo.api.motan.core.extension.SpiMeta;
+import com.weibo.api.motan.filter.Filter;
+import com.weibo.api.motan.rpc.Caller;
+import com.weibo.api.motan.rpc.Provider;
+import com.weibo.api.motan.rpc.Request;
+import com.weibo.api.motan.rpc.Response;
+import io.monkey.util.Deadline;
+import io.monkey.util.DeadlineExceededException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Propagates the {@link Deadline} of the current request over Motan calls.
+ * <p>
+ * Referers fail calls issued once the deadline has passed and send the remaining budget in
+ * milliseconds as the {@code X-Request-Deadline} attachment; services attach the received budget
+ * to the thread running the call, so their own queries and calls are bounded by it.
+ */
+@SpiMeta(name = "deadline")
+@Activation(sequence = 5, key = {MotanConstants.NODE_TYPE_SERVICE, MotanConstants.NODE_TYPE_REFERER})
+public class DeadlineFilter implements Filter {
+
+    public static final String DEADLINE_ATTACHMENT = "X-Request-Deadline";
+
+    @Override
+    public Response filter(Caller<?> caller, Request request) {
+        if (caller instanceof Provider) {
+            return serve(caller, request);
+        }
+
+        final Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            if (deadline.isExpired()) {
+                throw new DeadlineExceededException("request deadline exceeded before calling "
+                    + request.getInterfaceName() + "." + request.getMethodName());
+            }
+            request.setAttachment(DEADLINE_ATTACHMENT, Long.toString(deadline.remaining(TimeUnit.MILLISECONDS)));
+        }
+        return caller.call(request);
+    }
+
+    private Response serve(Caller<?> caller, Request request) {
+        final String budget = request.getAttachments() == null ? null : request.getAttachments().get(DEADLINE_ATTACHMENT);
+        if (budget == null) {
+            return caller.call(request);
+        }
+
+        final Deadline deadline;
+        try {
+            deadline = Deadline.after(Math.max(0, Long.parseLong(budget)), TimeUnit.MILLISECONDS);
+        } catch (NumberFormatException e) {
+            return caller.call(request);
+        }
+
+        try (Deadline.Scope ignored = Deadline.attach(deadline)) {
+            return caller.call(request);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy;
+
+import com.codahale.metrics.InstrumentedExecutorService;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.monkey.resteasy.async.AsyncFeature;
+import io.monkey.setup.Environment;
+import io.monkey.util.Duration;
+import io.monkey.validation.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configures the asynchronous resource methods, those returning a {@code CompletionStage} or
+ * taking a {@code @Suspended AsyncResponse}.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr><td>Name</td><td>Default</td><td>Description</td></tr>
+ *     <tr><td>timeout</td><td>30 seconds</td><td>How long a suspended response waits before it is
+ *         answered with {@code 503}, unless the request deadline is sooner.</td></tr>
+ *     <tr><td>minThreads</td><td>4</td><td>The core size of the completion executor.</td></tr>
+ *     <tr><td>maxThreads</td><td>16</td><td>The maximum size of the completion executor.</td></tr>
+ *     <tr><td>queueSize</td><td>1024</td><td>The completions waiting for a thread, beyond which they
+ *         run on the thread completing the stage.</td></tr>
+ * </table>
+ */
+public class AsyncFactory {
+
+    @NotNull
+    @MinDuration(1)
+    @JsonProperty
+    private Duration timeout = Duration.seconds(30);
+
+    @Min(1)
+    @JsonProperty
+    private int minThreads = 4;
+
+    @Min(1)
+    @JsonProperty
+    private int maxThreads = 16;
+
+    @Min(1)
+    @JsonProperty
+    private int queueSize = 1024;
+
+    public AsyncFeature build(Environment environment) {
+        final ExecutorService executor = environment.lifecycle()
+            .executorService("resteasy-async-%d")
+            .minThreads(minThreads)
+            .maxThreads(maxThreads)
+            .workQueue(new ArrayBlockingQueue<>(queueSize))
+            .rejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy())
+            .build();
+        final ScheduledExecutorService scheduler = environment.lifecycle()
+            .scheduledExecutorService("resteasy-async-timeout-%d", true)
+            .threads(1)
+            .build();
+        final MetricRegistry metrics = environment.metrics();
+        return new AsyncFeature(
+            new InstrumentedExecutorService(executor, metrics, MetricRegistry.name(AsyncFeature.class, "executor")),
+            scheduler, timeout, metrics);
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public void setMinThreads(int minThreads) {
+        this.minThreads = minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+}
@@ -16,11 +16,17 @@
 package io.monkey.resteasy;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.monkey.resteasy.filter.RequestContextFilter;
+import io.monkey.util.Deadline;
 import io.undertow.servlet.api.DeploymentInfo;
 import io.undertow.servlet.api.ServletInfo;
+import io.undertow.servlet.api.ThreadSetupHandler;
 import org.jboss.resteasy.plugins.server.servlet.HttpServlet30Dispatcher;
 import org.jboss.resteasy.spi.ResteasyDeployment;
+import org.slf4j.MDC;
 
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
 import java.util.Map;
 
 import static io.undertow.servlet.Servlets.servlet;
@@ -38,6 +44,16 @@ public class ResteasyFactory {
     @JsonProperty
     private Map<String, String> initParams;
 
+    @Valid
+    @NotNull
+    @JsonProperty
+    private AsyncFactory async = new AsyncFactory();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private SseFactory sse = new SseFactory();
+
     public DeploymentInfo build(ResteasyDeployment deployment) {
 
         if (contextPath == null) contextPath = "/";
@@ -48,6 +64,21 @@ public class ResteasyFactory {
         deploymentInfo.setContextPath(this.contextPath);
         deploymentInfo.setDeploymentName("Resteasy" + contextPath);
         deploymentInfo.setClassLoader(deployment.getClass().getClassLoader());
+        // the response filters of asynchronous requests run elsewhere, leave nothing on the worker
+        // once the dispatch returns, neither the deadline nor the request ID
+        deploymentInfo.addThreadSetupAction(new ThreadSetupHandler() {
+            @Override
+            public <T, C> Action<T, C> create(Action<T, C> action) {
+                return (exchange, context) -> {
+                    try {
+                        return action.call(exchange, context);
+                    } finally {
+                        Deadline.detach();
+                        MDC.remove(RequestContextFilter.MDC_KEY);
+                    }
+                };
+            }
+        });
 
         if (contextParams != null) {
             for (Map.Entry<String, String> e : contextParams.entrySet()) {
@@ -96,4 +127,20 @@ public class ResteasyFactory {
     public void setInitParams(Map<String, String> initParams) {
         this.initParams = initParams;
     }
+
+    public AsyncFactory getAsync() {
+        return async;
+    }
+
+    public void setAsync(AsyncFactory async) {
+        this.async = async;
+    }
+
+    public SseFactory getSse() {
+        return sse;
+    }
+
+    public void setSse(SseFactory sse) {
+        this.sse = sse;
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy;
+
+import com.codahale.metrics.InstrumentedExecutorService;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.monkey.resteasy.sse.SlowConsumerPolicy;
+import io.monkey.resteasy.sse.SseBroadcasters;
+import io.monkey.setup.Environment;
+import io.monkey.util.Duration;
+import io.monkey.validation.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Configures the {@link SseBroadcasters} which fan server-sent events out to their subscribers.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr><td>Name</td><td>Default</td><td>Description</td></tr>
+ *     <tr><td>bufferSize</td><td>256</td><td>The events buffered per subscriber.</td></tr>
+ *     <tr><td>slowConsumer</td><td>DROP</td><td>What happens to a subscriber whose buffer is full,
+ *         {@code DROP} its oldest event or {@code DISCONNECT} it.</td></tr>
+ *     <tr><td>heartbeat</td><td>15 seconds</td><td>How often idle subscribers are sent a comment.</td></tr>
+ *     <tr><td>writeTimeout</td><td>5 seconds</td><td>How long a write to a subscriber may block its
+ *         thread before the subscriber is disconnected.</td></tr>
+ *     <tr><td>threads</td><td>4</td><td>The threads writing events to the subscribers.</td></tr>
+ * </table>
+ */
+public class SseFactory {
+
+    @Min(1)
+    @JsonProperty
+    private int bufferSize = 256;
+
+    @NotNull
+    @JsonProperty
+    private SlowConsumerPolicy slowConsumer = SlowConsumerPolicy.DROP;
+
+    @NotNull
+    @MinDuration(1)
+    @JsonProperty
+    private Duration heartbeat = Duration.seconds(15);
+
+    @NotNull
+    @MinDuration(1)
+    @JsonProperty
+    private Duration writeTimeout = Duration.seconds(5);
+
+    @Min(1)
+    @JsonProperty
+    private int threads = 4;
+
+    public SseBroadcasters build(Environment environment) {
+        // a subscriber has one task queued at most, so the unbounded queue is bounded by the subscribers
+        final ExecutorService executor = environment.lifecycle()
+            .executorService("resteasy-sse-%d")
+            .minThreads(threads)
+            .maxThreads(threads)
+            .build();
+        final ScheduledExecutorService scheduler = environment.lifecycle()
+            .scheduledExecutorService("resteasy-sse-heartbeat-%d", true)
+            .threads(1)
+            .build();
+        final MetricRegistry metrics = environment.metrics();
+        final SseBroadcasters broadcasters = new SseBroadcasters(environment.getObjectMapper(),
+            new InstrumentedExecutorService(executor, metrics, MetricRegistry.name(SseBroadcasters.class, "executor")),
+            scheduler, bufferSize, slowConsumer, heartbeat, writeTimeout, metrics);
+        environment.lifecycle().manage(broadcasters);
+        environment.addServerLifecycleListener(broadcasters);
+        return broadcasters;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public SlowConsumerPolicy getSlowConsumer() {
+        return slowConsumer;
+    }
+
+    public void setSlowConsumer(SlowConsumerPolicy slowConsumer) {
+        this.slowConsumer = slowConsumer;
+    }
+
+    public Duration getHeartbeat() {
+        return heartbeat;
+    }
+
+    public void setHeartbeat(Duration heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
+    public Duration getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public void setWriteTimeout(Duration writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+}
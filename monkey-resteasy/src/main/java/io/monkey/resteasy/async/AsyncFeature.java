@@ -0,0 +1,319 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.async;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.monkey.util.Deadline;
+import io.monkey.util.DeadlineExceededException;
+import io.monkey.util.Duration;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.jboss.resteasy.spi.AsyncResponseProvider;
+import org.slf4j.MDC;
+
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Feature;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.ext.Provider;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Supports resource methods returning a {@link CompletionStage} or taking a {@link Suspended}
+ * {@link AsyncResponse}; the servlet worker is released while they wait on RPC or database futures.
+ * <p>
+ * Completed stages are written from a lifecycle managed executor rather than the thread which
+ * completed them, and fail with {@code 503} after the configured timeout, or with {@code 504}
+ * when the request deadline is sooner. Suspended {@link AsyncResponse}s are given the same timeout
+ * by {@link #suspendedTimeout()} before the resource method runs, the method may still set its own. The pending responses are counted as
+ * {@code io.monkey.resteasy.async.AsyncFeature.pending}.
+ * <p>
+ * The logging MDC of the request thread, and with it the request ID, is carried over to the
+ * completions and to the tasks submitted to the executor.
+ */
+@Provider
+public class AsyncFeature implements Feature {
+
+    /**
+     * The name of the completion executor binding, for resources resuming {@link AsyncResponse}s.
+     */
+    public static final String EXECUTOR = "resteasy-async";
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final Duration timeout;
+    private final Counter pending;
+    private final Timer duration;
+    private final Meter timeouts;
+
+    public AsyncFeature(ExecutorService executor, ScheduledExecutorService scheduler, Duration timeout,
+                        MetricRegistry metrics) {
+        this.executor = new MdcExecutorService(executor);
+        this.scheduler = scheduler;
+        this.timeout = timeout;
+        this.pending = metrics.counter(name(AsyncFeature.class, "pending"));
+        this.duration = metrics.timer(name(AsyncFeature.class, "duration"));
+        this.timeouts = metrics.meter(name(AsyncFeature.class, "timeouts"));
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * RESTEasy suspends servlet requests without a timeout, so the timeout is set on the
+     * {@link AsyncResponse} argument of the methods matched by {@link #hasSuspendedParameter(Method)}
+     * as they are invoked.
+     *
+     * @return the interceptor to bind around the resource methods taking a suspended response
+     */
+    public MethodInterceptor suspendedTimeout() {
+        return new SuspendedTimeoutInterceptor();
+    }
+
+    /**
+     * @return whether the method takes a {@link Suspended} {@link AsyncResponse}
+     */
+    public static boolean hasSuspendedParameter(Method method) {
+        for (Annotation[] annotations : method.getParameterAnnotations()) {
+            for (Annotation annotation : annotations) {
+                if (annotation.annotationType() == Suspended.class) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean configure(FeatureContext context) {
+        context.register(new ManagedCompletionStageProvider());
+        context.register(new AsyncMethodBinder());
+        return true;
+    }
+
+    private class AsyncMethodBinder implements DynamicFeature {
+
+        @Override
+        public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+            if (isAsync(resourceInfo.getResourceMethod())) {
+                context.register(new PendingResponseFilter());
+            }
+        }
+
+        private boolean isAsync(Method method) {
+            return CompletionStage.class.isAssignableFrom(method.getReturnType()) || hasSuspendedParameter(method);
+        }
+    }
+
+    /**
+     * @return the remaining time of the request deadline when it is sooner than the timeout, otherwise
+     * a negative value
+     */
+    private static long deadlineBound(long timeoutNanos) {
+        final Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return -1;
+        }
+        final long remaining = deadline.remaining(TimeUnit.NANOSECONDS);
+        return remaining < timeoutNanos ? Math.max(remaining, 0) : -1;
+    }
+
+    private static RuntimeException timeoutException(boolean bounded) {
+        return bounded
+            ? new DeadlineExceededException("request deadline exceeded while waiting for completion")
+            : new ServiceUnavailableException();
+    }
+
+    private class SuspendedTimeoutInterceptor implements MethodInterceptor {
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            for (Object argument : invocation.getArguments()) {
+                if (argument instanceof AsyncResponse) {
+                    final long timeoutNanos = timeout.toNanoseconds();
+                    final long bound = deadlineBound(timeoutNanos);
+                    final AsyncResponse response = (AsyncResponse) argument;
+                    response.setTimeoutHandler(r -> {
+                        if (r.resume(timeoutException(bound >= 0))) {
+                            timeouts.mark();
+                        }
+                    });
+                    response.setTimeout(bound >= 0 ? bound : timeoutNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            return invocation.proceed();
+        }
+    }
+
+    /**
+     * Counts a request as pending until its exchange completes, whether or not a response filter
+     * runs: unmapped exceptions and clients going away before the response is resumed skip them.
+     * Without a servlet exchange, the response filter is relied upon instead.
+     */
+    private class PendingResponseFilter implements ContainerRequestFilter, ContainerResponseFilter {
+        private final String property = PendingResponseFilter.class.getName() + ".timer";
+
+        @Override
+        public void filter(ContainerRequestContext requestContext) {
+            pending.inc();
+            final Timer.Context context = duration.time();
+            final ServletRequestContext servletRequestContext = ServletRequestContext.current();
+            if (servletRequestContext == null) {
+                requestContext.setProperty(property, context);
+                return;
+            }
+            servletRequestContext.getExchange().addExchangeCompleteListener((exchange, next) -> {
+                try {
+                    context.stop();
+                    pending.dec();
+                } finally {
+                    next.proceed();
+                }
+            });
+        }
+
+        @Override
+        public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+            final Timer.Context context = (Timer.Context) requestContext.getProperty(property);
+            if (context != null) {
+                requestContext.removeProperty(property);
+                context.stop();
+                pending.dec();
+            }
+        }
+    }
+
+    private class ManagedCompletionStageProvider implements AsyncResponseProvider<CompletionStage<?>> {
+
+        @Override
+        public CompletionStage toCompletionStage(CompletionStage<?> stage) {
+            final CompletableFuture<Object> result = new CompletableFuture<>();
+
+            final long timeoutNanos = timeout.toNanoseconds();
+            final long bound = deadlineBound(timeoutNanos);
+            final ScheduledFuture<?> timer = scheduler.schedule(() -> {
+                if (result.completeExceptionally(timeoutException(bound >= 0))) {
+                    timeouts.mark();
+                }
+            }, bound >= 0 ? bound : timeoutNanos, TimeUnit.NANOSECONDS);
+
+            final Map<String, String> mdc = MDC.getCopyOfContextMap();
+            stage.whenCompleteAsync((value, error) -> withMdc(mdc, () -> {
+                timer.cancel(false);
+                if (error != null) {
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                } else {
+                    result.complete(value);
+                }
+            }).run(), executor);
+            return result;
+        }
+    }
+
+    /**
+     * @return the task running with the given MDC, and then with the MDC of its thread again
+     */
+    private static Runnable withMdc(Map<String, String> mdc, Runnable task) {
+        return () -> {
+            final Map<String, String> previous = MDC.getCopyOfContextMap();
+            setMdc(mdc);
+            try {
+                task.run();
+            } finally {
+                setMdc(previous);
+            }
+        };
+    }
+
+    private static void setMdc(Map<String, String> mdc) {
+        if (mdc == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(mdc);
+        }
+    }
+
+    /**
+     * Runs the tasks with the MDC of the thread submitting them.
+     */
+    private static final class MdcExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+
+        MdcExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(withMdc(MDC.getCopyOfContextMap(), command));
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -15,6 +15,10 @@
 
 package io.monkey.resteasy.caching;
 
+import io.monkey.undertow.handler.ResponseCacheHandler;
+import io.undertow.servlet.handlers.ServletRequestContext;
+
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.container.*;
 import javax.ws.rs.core.FeatureContext;
 import javax.ws.rs.core.HttpHeaders;
@@ -43,6 +47,7 @@ public class CacheControlledResponseFeature implements DynamicFeature {
     private static class CacheControlledResponseFilter implements ContainerResponseFilter {
         private static final int ONE_YEAR_IN_SECONDS = (int) TimeUnit.DAYS.toSeconds(365);
         private String cacheResponseHeader;
+        private long cacheTtlNanos;
 
         CacheControlledResponseFilter(CacheControl control) {
             final javax.ws.rs.core.CacheControl cacheControl = new javax.ws.rs.core.CacheControl();
@@ -59,6 +64,9 @@ public class CacheControlledResponseFeature implements DynamicFeature {
             }
 
             cacheResponseHeader = cacheControl.toString();
+            if (!control.isPrivate() && !control.noCache() && !control.noStore()) {
+                cacheTtlNanos = TimeUnit.SECONDS.toNanos(cacheControl.getMaxAge());
+            }
         }
 
         @Override
@@ -68,6 +76,14 @@ public class CacheControlledResponseFeature implements DynamicFeature {
                 responseContext.getHeaders().add(HttpHeaders.CACHE_CONTROL, cacheResponseHeader);
             }
 
+            // shared responses may be kept by the server's response cache, when enabled
+            if (cacheTtlNanos > 0 && HttpMethod.GET.equals(requestContext.getMethod())) {
+                ServletRequestContext servletRequestContext = ServletRequestContext.current();
+                if (servletRequestContext != null) {
+                    servletRequestContext.getExchange().putAttachment(ResponseCacheHandler.TTL, cacheTtlNanos);
+                }
+            }
+
         }
 
     }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.caching;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets concurrent identical {@code GET} requests of the annotated method share one invocation: the
+ * first request computes the response while the others wait for it and are answered with a copy
+ * of its status, headers and serialized entity.
+ * <p>
+ * Requests are identical when they have the same path, query parameters, {@code Accept} header
+ * and, unless disabled, principal. Responses with a {@code 5xx} status are not shared; waiting
+ * requests then invoke the method themselves.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Coalesce {
+
+    /**
+     * @return the query parameters identifying a request, all of them when empty
+     */
+    String[] params() default {};
+
+    /**
+     * @return whether only requests of the same principal are coalesced
+     */
+    boolean perPrincipal() default true;
+
+    /**
+     * @return how long a request waits for the shared response before invoking the method itself
+     */
+    long timeout() default 10;
+
+    /**
+     * @return the unit of {@link #timeout()}
+     */
+    TimeUnit timeoutUnit() default TimeUnit.SECONDS;
+}
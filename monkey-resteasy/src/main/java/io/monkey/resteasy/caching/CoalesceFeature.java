@@ -0,0 +1,396 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.caching;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.monkey.setup.Environment;
+import io.monkey.util.Deadline;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import org.jboss.resteasy.core.interception.jaxrs.SuspendableContainerRequestContext;
+import org.xnio.XnioExecutor;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.security.Principal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Registers request coalescing for {@code GET} methods annotated with {@link Coalesce}.
+ * <p>
+ * Per method, {@code leaders} meters the invocations and {@code followers} the requests answered
+ * with their responses, while the {@code fan-in} histogram records how many requests each
+ * invocation served besides its own. Followers are suspended while they wait, so that a stampede
+ * of identical requests does not hold on to worker threads.
+ */
+@Provider
+public class CoalesceFeature implements DynamicFeature {
+
+    private static final int MAX_SHARED_SIZE = 4 * 1024 * 1024;
+
+    private final MetricRegistry metrics;
+
+    @Inject
+    public CoalesceFeature(Environment environment) {
+        this.metrics = environment.metrics();
+    }
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        final Method method = resourceInfo.getResourceMethod();
+        final Coalesce coalesce = method.getAnnotation(Coalesce.class);
+        if (coalesce != null && method.isAnnotationPresent(GET.class)) {
+            final String name = name(resourceInfo.getResourceClass(), method.getName());
+            context.register(new CoalescingFilter(coalesce,
+                metrics.meter(name(name, "leaders")),
+                metrics.meter(name(name, "followers")),
+                metrics.histogram(name(name, "fan-in"))));
+        }
+    }
+
+    @Priority(Priorities.USER)
+    private static class CoalescingFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+        private static final String FLIGHT_PROPERTY = CoalescingFilter.class.getName() + ".flight";
+
+        private final Coalesce coalesce;
+        private final Meter leaders;
+        private final Meter followers;
+        private final Histogram fanIn;
+        private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+        CoalescingFilter(Coalesce coalesce, Meter leaders, Meter followers, Histogram fanIn) {
+            this.coalesce = coalesce;
+            this.leaders = leaders;
+            this.followers = followers;
+            this.fanIn = fanIn;
+        }
+
+        @Override
+        public void filter(ContainerRequestContext request) {
+            final String key = key(request);
+            final Flight flight = new Flight(key);
+            final Flight leader = flights.putIfAbsent(key, flight);
+            if (leader == null) {
+                leaders.mark();
+                request.setProperty(FLIGHT_PROPERTY, flight);
+                // whatever happens to the request, its followers must not wait for it any longer
+                final ServletRequestContext servletRequestContext = ServletRequestContext.current();
+                if (servletRequestContext != null) {
+                    servletRequestContext.getExchange().addExchangeCompleteListener((exchange, next) -> {
+                        land(flight, null);
+                        next.proceed();
+                    });
+                }
+                return;
+            }
+
+            follow(request, leader);
+        }
+
+        /**
+         * Suspends the request until the leader lands, rather than parking a worker thread while
+         * the stampede lasts. Without a servlet exchange to resume it on, the request is invoked.
+         */
+        private void follow(ContainerRequestContext request, Flight leader) {
+            final ServletRequestContext servletRequestContext = ServletRequestContext.current();
+            final long timeoutNanos = timeoutNanos();
+            if (servletRequestContext == null || timeoutNanos <= 0
+                || !(request instanceof SuspendableContainerRequestContext)) {
+                return;
+            }
+
+            leader.followers.incrementAndGet();
+            if (leader.result.isDone()) {
+                final SharedResponse shared = leader.result.join();
+                if (shared != null) {
+                    followers.mark();
+                    request.abortWith(shared.toResponse());
+                }
+                return;
+            }
+
+            final HttpServerExchange exchange = servletRequestContext.getExchange();
+            final Follower follower = new Follower((SuspendableContainerRequestContext) request,
+                exchange.getConnection().getWorker(), Deadline.current());
+            follower.request.suspend();
+            follower.timeout = exchange.getIoThread().executeAfter(() -> follower.wake(null),
+                timeoutNanos, TimeUnit.NANOSECONDS);
+            leader.result.thenAccept(follower::wake);
+        }
+
+        @Override
+        public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+            final Flight flight = (Flight) request.getProperty(FLIGHT_PROPERTY);
+            if (flight == null) {
+                return;
+            }
+            if (response.getStatus() >= 500) {
+                request.removeProperty(FLIGHT_PROPERTY);
+                land(flight, null);
+                return;
+            }
+
+            flight.status = response.getStatus();
+            flight.mediaType = response.getMediaType();
+            flight.headers = copyHeaders(response.getStringHeaders());
+            if (!response.hasEntity()) {
+                request.removeProperty(FLIGHT_PROPERTY);
+                land(flight, new SharedResponse(flight, null));
+            }
+        }
+
+        @Override
+        public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+            final Flight flight = (Flight) context.getProperty(FLIGHT_PROPERTY);
+            if (flight == null || flight.headers == null) {
+                context.proceed();
+                return;
+            }
+
+            // the leader's response is sent as it is written, a copy is kept for the followers
+            final OutputStream out = context.getOutputStream();
+            final TeeOutputStream tee = new TeeOutputStream(out);
+            context.setOutputStream(tee);
+            try {
+                context.proceed();
+            } finally {
+                context.setOutputStream(out);
+                context.removeProperty(FLIGHT_PROPERTY);
+                land(flight, tee.isComplete() ? new SharedResponse(flight, tee.toByteArray()) : null);
+            }
+        }
+
+        private void land(Flight flight, SharedResponse shared) {
+            if (flights.remove(flight.key, flight)) {
+                fanIn.update(flight.followers.get());
+            }
+            flight.result.complete(shared);
+        }
+
+        private String key(ContainerRequestContext request) {
+            final StringBuilder key = new StringBuilder(request.getUriInfo().getPath());
+            final String[] params = coalesce.params();
+            if (params.length == 0) {
+                final String query = request.getUriInfo().getRequestUri().getRawQuery();
+                key.append('?').append(query == null ? "" : query);
+            } else {
+                final MultivaluedMap<String, String> query = request.getUriInfo().getQueryParameters(false);
+                for (String param : params) {
+                    key.append('\n').append(param).append('=').append(query.get(param));
+                }
+            }
+            key.append('\n').append(request.getHeaderString(HttpHeaders.ACCEPT));
+            if (coalesce.perPrincipal()) {
+                final Principal principal = request.getSecurityContext() == null
+                    ? null : request.getSecurityContext().getUserPrincipal();
+                key.append('\n').append(principal == null ? "" : principal.getName());
+            }
+            return key.toString();
+        }
+
+        private long timeoutNanos() {
+            final long timeout = coalesce.timeoutUnit().toNanos(coalesce.timeout());
+            final Deadline deadline = Deadline.current();
+            return deadline == null ? timeout : Math.min(timeout, deadline.remaining(TimeUnit.NANOSECONDS));
+        }
+
+        /**
+         * A request suspended until its leader lands or its timeout expires, whichever comes first.
+         */
+        private final class Follower {
+            private final SuspendableContainerRequestContext request;
+            private final Executor worker;
+            private final Deadline deadline;
+            private final AtomicBoolean woken = new AtomicBoolean();
+            private volatile XnioExecutor.Key timeout;
+
+            Follower(SuspendableContainerRequestContext request, Executor worker, Deadline deadline) {
+                this.request = request;
+                this.worker = worker;
+                this.deadline = deadline;
+            }
+
+            void wake(SharedResponse shared) {
+                if (!woken.compareAndSet(false, true)) {
+                    return;
+                }
+                final XnioExecutor.Key timeout = this.timeout;
+                if (timeout != null) {
+                    timeout.remove();
+                }
+                // the flight may land on an I/O thread, which must neither write nor invoke the resource
+                worker.execute(() -> {
+                    if (shared != null) {
+                        followers.mark();
+                        request.abortWith(shared.toResponse());
+                        return;
+                    }
+                    try (Deadline.Scope ignored = Deadline.attach(deadline)) {
+                        request.resume();
+                    }
+                });
+            }
+        }
+
+        private static List<Map.Entry<String, List<String>>> copyHeaders(MultivaluedMap<String, String> headers) {
+            final List<Map.Entry<String, List<String>>> copy = new ArrayList<>(headers.size());
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                final String name = header.getKey();
+                if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)
+                    && !HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)
+                    && !HttpHeaders.SET_COOKIE.equalsIgnoreCase(name)) {
+                    copy.add(new AbstractMap.SimpleImmutableEntry<>(name, new ArrayList<>(header.getValue())));
+                }
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * The invocation of a leading request, awaited by the identical requests arriving meanwhile.
+     */
+    private static final class Flight {
+        private final String key;
+        private final AtomicInteger followers = new AtomicInteger();
+        private final CompletableFuture<SharedResponse> result = new CompletableFuture<>();
+        private volatile int status;
+        private volatile MediaType mediaType;
+        private volatile List<Map.Entry<String, List<String>>> headers;
+
+        Flight(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class SharedResponse {
+        private final int status;
+        private final MediaType mediaType;
+        private final List<Map.Entry<String, List<String>>> headers;
+        private final byte[] entity;
+
+        SharedResponse(Flight flight, byte[] entity) {
+            this.status = flight.status;
+            this.mediaType = flight.mediaType;
+            this.headers = flight.headers;
+            this.entity = entity;
+        }
+
+        Response toResponse() {
+            final Response.ResponseBuilder builder = Response.status(status);
+            for (Map.Entry<String, List<String>> header : headers) {
+                for (String value : header.getValue()) {
+                    builder.header(header.getKey(), value);
+                }
+            }
+            if (entity != null) {
+                builder.entity(entity).type(mediaType);
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Copies what is written to the response, up to a limit beyond which nothing is shared.
+     */
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream out;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream(8192);
+        private boolean closed;
+
+        TeeOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        boolean isComplete() {
+            return copy != null;
+        }
+
+        byte[] toByteArray() {
+            return copy.toByteArray();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        }
+
+        private void checkLimit() {
+            if (copy.size() > MAX_SHARED_SIZE) {
+                copy = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.caching;
+
+import com.google.common.base.Splitter;
+import io.monkey.resteasy.jackson.JacksonMessageBodyProvider;
+import org.jboss.resteasy.spi.HttpResponse;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import javax.annotation.Priority;
+import javax.ws.rs.GET;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.zip.CRC32;
+
+/**
+ * Registers conditional {@code GET} support for methods annotated with {@link ETag}.
+ */
+@Provider
+public class ETagFeature implements DynamicFeature {
+
+    private static final Splitter TAG_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        final Method method = resourceInfo.getResourceMethod();
+        if (method.isAnnotationPresent(GET.class)
+            && (method.isAnnotationPresent(ETag.class) || resourceInfo.getResourceClass().isAnnotationPresent(ETag.class))) {
+            context.register(ETagFilter.class);
+        }
+    }
+
+    /**
+     * @return whether the {@code If-None-Match} header lists the tag, ignoring weakness as RFC 7232 asks
+     */
+    static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        final String opaque = opaque(tag);
+        for (String candidate : TAG_SPLITTER.split(ifNoneMatch)) {
+            if ("*".equals(candidate) || opaque.equals(opaque(candidate))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Tags versioned entities before they are written, otherwise hashes the serialized entity,
+     * underneath any content coding, as it is written. The serialized entity is held back until
+     * its tag is known, up to a megabyte beyond which it is sent untagged.
+     * Streamed entities, which are meant to be written in constant memory, are never tagged
+     * unless versioned.
+     */
+    @Priority(Priorities.ENTITY_CODER + 100)
+    public static class ETagFilter implements ContainerResponseFilter, WriterInterceptor {
+        private static final String IF_NONE_MATCH = ETagFilter.class.getName() + ".ifNoneMatch";
+        private static final int MAX_BUFFERED_SIZE = 1024 * 1024;
+
+        @Override
+        public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+            if (response.getStatus() != Response.Status.OK.getStatusCode() || !response.hasEntity()
+                || response.getHeaders().containsKey(HttpHeaders.ETAG)) {
+                return;
+            }
+
+            final String ifNoneMatch = request.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+            final Object entity = response.getEntity();
+            if (entity instanceof Versioned) {
+                // weak: the same version may be serialized in several media types or encodings
+                final String tag = "W/\"v" + Long.toHexString(((Versioned) entity).getVersion()) + '"';
+                response.getHeaders().putSingle(HttpHeaders.ETAG, tag);
+                if (matches(ifNoneMatch, tag)) {
+                    response.setStatus(Response.Status.NOT_MODIFIED.getStatusCode());
+                    response.setEntity(null);
+                }
+                return;
+            }
+            if (entity instanceof InputStream || entity instanceof StreamingOutput
+                || JacksonMessageBodyProvider.isStreamed(entity)) {
+                return;
+            }
+
+            request.setProperty(IF_NONE_MATCH, ifNoneMatch == null ? "" : ifNoneMatch);
+        }
+
+        @Override
+        public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+            final Object ifNoneMatch = context.getProperty(IF_NONE_MATCH);
+            if (ifNoneMatch == null) {
+                context.proceed();
+                return;
+            }
+
+            final OutputStream out = context.getOutputStream();
+            final ChecksumBuffer buffer = new ChecksumBuffer(out, MAX_BUFFERED_SIZE);
+            context.setOutputStream(buffer);
+            try {
+                context.proceed();
+            } finally {
+                context.setOutputStream(out);
+            }
+            if (!buffer.isBuffered()) {
+                // too large to hold back, it has been sent as it was written
+                return;
+            }
+
+            final String tag = '"' + Long.toHexString(buffer.checksum()) + '"';
+            context.getHeaders().putSingle(HttpHeaders.ETAG, tag);
+            if (matches((String) ifNoneMatch, tag)) {
+                ResteasyProviderFactory.getContextData(HttpResponse.class).setStatus(Response.Status.NOT_MODIFIED.getStatusCode());
+                context.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+            } else {
+                buffer.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Checksums what is written and holds it back, up to a limit beyond which it passes through.
+     */
+    private static class ChecksumBuffer extends OutputStream {
+        private final OutputStream out;
+        private final int limit;
+        private final CRC32 crc = new CRC32();
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+
+        ChecksumBuffer(OutputStream out, int limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        boolean isBuffered() {
+            return buffer != null;
+        }
+
+        long checksum() {
+            return crc.getValue();
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            buffer.writeTo(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (buffer == null) {
+                out.write(b);
+                return;
+            }
+            crc.update(b);
+            buffer.write(b);
+            checkLimit();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (buffer == null) {
+                out.write(b, off, len);
+                return;
+            }
+            crc.update(b, off, len);
+            buffer.write(b, off, len);
+            checkLimit();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (buffer == null) {
+                out.flush();
+            }
+        }
+
+        private void checkLimit() throws IOException {
+            if (buffer.size() > limit) {
+                buffer.writeTo(out);
+                buffer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.caching;
+
+/**
+ * An entity which knows the version of its state, letting {@link ETag} methods answer
+ * conditional requests without serializing it.
+ */
+public interface Versioned {
+
+    /**
+     * @return a number changing whenever the serialized form of the entity would
+     */
+    long getVersion();
+}
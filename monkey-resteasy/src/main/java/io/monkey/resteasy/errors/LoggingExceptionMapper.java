@@ -15,6 +15,8 @@
 
 package io.monkey.resteasy.errors;
 
+import io.monkey.util.Deadline;
+import io.monkey.util.DeadlineExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +25,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static java.util.Objects.requireNonNull;
@@ -62,6 +66,15 @@ public abstract class LoggingExceptionMapper<E extends Throwable> implements Exc
                 .build();
         }
 
+        // Running out of the request deadline, e.g. a query timed out on the remaining budget and
+        // wrapped by the data access library, is a gateway timeout rather than a server error
+        if (isDeadlineExceeded(exception)) {
+            return Response.status(Response.Status.GATEWAY_TIMEOUT)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorMessage(Response.Status.GATEWAY_TIMEOUT.getStatusCode(), "request deadline exceeded"))
+                .build();
+        }
+
         // Else the thrown exception is a not a web exception, so the exception is most likely
         // unexpected. We'll create a unique id in the server error response that is also logged for
         // correlation
@@ -72,6 +85,27 @@ public abstract class LoggingExceptionMapper<E extends Throwable> implements Exc
                 .build();
     }
 
+    /**
+     * @return whether the exception, or one of its causes, reports the request deadline overrun: a
+     * {@link DeadlineExceededException}, a {@link SQLTimeoutException}, or any {@link SQLException}
+     * once the deadline of the request has passed, as drivers report cancelled queries variously
+     */
+    protected boolean isDeadlineExceeded(Throwable exception) {
+        final Deadline deadline = Deadline.current();
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException || cause instanceof SQLTimeoutException) {
+                return true;
+            }
+            if (cause instanceof SQLException && deadline != null && deadline.isExpired()) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
     @SuppressWarnings("UnusedParameters")
     protected String formatErrorMessage(long id, E exception) {
         return String.format("There was an error processing your request. It has been logged (ID %016x).", id);
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.filter;
+
+import io.monkey.resteasy.errors.ErrorMessage;
+import io.monkey.undertow.handler.DeadlineHandler;
+import io.monkey.util.Deadline;
+import io.monkey.util.DeadlineExceededException;
+import io.undertow.servlet.handlers.ServletRequestContext;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.Feature;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Attaches the {@link Deadline} set by {@link DeadlineHandler} to the thread serving the resource,
+ * where {@link Deadline#current()} exposes it to resources, JDBI and Ebean query timeouts and Motan
+ * referers.
+ * <p>
+ * Requests whose budget ran out while waiting for a worker are refused with {@code 503} before any
+ * work; a {@link DeadlineExceededException} thrown during the work becomes a {@code 504}. The
+ * deadline is detached from the worker when the servlet dispatch returns, also for asynchronous
+ * requests whose response filters run on another thread.
+ */
+@Provider
+public class DeadlineFeature implements Feature {
+
+    private static final String SCOPE_PROPERTY = "io.monkey.resteasy.filter.deadline";
+
+    @Override
+    public boolean configure(FeatureContext context) {
+        context.register(new DeadlineFilter());
+        context.register(new DeadlineExceededExceptionMapper());
+        return true;
+    }
+
+    @PreMatching
+    @Priority(Priorities.AUTHENTICATION - 100)
+    private static class DeadlineFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+        @Override
+        public void filter(ContainerRequestContext requestContext) {
+            ServletRequestContext servletRequestContext = ServletRequestContext.current();
+            Deadline deadline = servletRequestContext == null
+                ? null : servletRequestContext.getExchange().getAttachment(DeadlineHandler.DEADLINE);
+            if (deadline == null) {
+                return;
+            }
+
+            if (deadline.isExpired()) {
+                requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .type(MediaType.APPLICATION_JSON_TYPE)
+                    .entity(new ErrorMessage(503, "request deadline exceeded before processing"))
+                    .build());
+                return;
+            }
+            requestContext.setProperty(SCOPE_PROPERTY, Deadline.attach(deadline));
+        }
+
+        @Override
+        public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+            Deadline.Scope scope = (Deadline.Scope) requestContext.getProperty(SCOPE_PROPERTY);
+            if (scope != null) {
+                requestContext.removeProperty(SCOPE_PROPERTY);
+                scope.close();
+            }
+        }
+    }
+
+    private static class DeadlineExceededExceptionMapper implements ExceptionMapper<DeadlineExceededException> {
+
+        @Override
+        public Response toResponse(DeadlineExceededException exception) {
+            return Response.status(Response.Status.GATEWAY_TIMEOUT)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorMessage(504, exception.getMessage()))
+                .build();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.monkey.resteasy.filter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.Provider;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class combines {@link RequestIdFilter} and {@link RuntimeFilter}: it adds "X-Request-Id"
+ * and "X-Runtime" HTTP response headers, and puts the request ID into the logging MDC under
+ * {@value #MDC_KEY} while the request is processed. The ID is removed from the MDC when the
+ * servlet dispatch returns rather than here, so that it also covers the writing of the entity.
+ * <p>
+ * Request IDs not supplied by the client are made of a random per-thread prefix and a per-thread
+ * sequence, encoded in a reused buffer, so neither needs coordination between threads.
+ */
+@Provider
+@PreMatching
+@Priority(Priorities.USER)
+public class RequestContextFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String MDC_KEY = "requestId";
+
+    private static final String REQUEST_ID = "X-Request-Id";
+    private static final String RUNTIME_HEADER = "X-Runtime";
+    private static final String CONTEXT_PROPERTY = "io.monkey.resteasy.filter.context";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<IdGenerator> GENERATORS = ThreadLocal.withInitial(IdGenerator::new);
+
+    private Logger logger = LoggerFactory.getLogger(RequestContextFilter.class);
+
+    void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext request) {
+        String id = request.getHeaderString(REQUEST_ID);
+        if (id == null || id.isEmpty()) {
+            id = GENERATORS.get().next();
+        }
+        request.setProperty(CONTEXT_PROPERTY, new RequestContext(id, System.nanoTime()));
+        MDC.put(MDC_KEY, id);
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext request,
+            final ContainerResponseContext response) {
+
+        final RequestContext context = (RequestContext) request.getProperty(CONTEXT_PROPERTY);
+        if (context == null) {
+            return;
+        }
+
+        response.getHeaders().putSingle(REQUEST_ID, context.id);
+        response.getHeaders().putSingle(RUNTIME_HEADER, formatSeconds(System.nanoTime() - context.startTime));
+        if (logger.isTraceEnabled()) {
+            logger.trace("method={} path={} request_id={} status={} length={}",
+                    request.getMethod(), request.getUriInfo().getPath(), context.id,
+                    response.getStatus(), response.getLength());
+        }
+    }
+
+    /**
+     * @return the nanoseconds as seconds with six decimals, as {@code %.6f} would
+     */
+    private static String formatSeconds(long nanos) {
+        final long micros = Math.max(0, (nanos + 500) / 1000);
+        final StringBuilder sb = new StringBuilder(16);
+        sb.append(micros / 1_000_000).append('.');
+        final long fraction = micros % 1_000_000;
+        for (long digit = 100_000; digit > fraction && digit > 1; digit /= 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+
+    private static final class RequestContext {
+        private final String id;
+        private final long startTime;
+
+        RequestContext(String id, long startTime) {
+            this.id = id;
+            this.startTime = startTime;
+        }
+    }
+
+    /**
+     * Generates 24 hexadecimal digit IDs: a random 64 bit prefix drawn per thread, followed by the
+     * thread's 32 bit sequence; a new prefix is drawn when the sequence wraps.
+     */
+    private static final class IdGenerator {
+        private final char[] chars = new char[24];
+        private long prefix;
+        private int sequence;
+
+        IdGenerator() {
+            prefix = ThreadLocalRandom.current().nextLong();
+        }
+
+        String next() {
+            if (++sequence == 0) {
+                prefix = ThreadLocalRandom.current().nextLong();
+            }
+            encode(prefix, 0, 16);
+            encode(sequence, 16, 8);
+            return new String(chars);
+        }
+
+        private void encode(long value, int offset, int digits) {
+            for (int i = offset + digits - 1; i >= offset; i--) {
+                chars[i] = HEX[(int) (value & 0xf)];
+                value >>>= 4;
+            }
+        }
+    }
+}
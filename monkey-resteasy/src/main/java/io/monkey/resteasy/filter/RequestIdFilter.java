@@ -20,7 +20,9 @@ import java.util.concurrent.ThreadLocalRandom;
  * response length (or -1 if not known).
  *
  * @see <a href="https://devcenter.heroku.com/articles/http-request-id">Heroku - HTTP Request IDs</a>
+ * @deprecated use {@link RequestContextFilter}, which also sets the logging MDC
  */
+@Deprecated
 @Provider
 @Priority(Priorities.USER)
 public class RequestIdFilter implements ContainerResponseFilter {
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.filter;
+
+import io.monkey.undertow.handler.InstrumentedHandler;
+import io.undertow.servlet.handlers.ServletRequestContext;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Exposes the path template of the matched resource method (e.g. {@code /app/users/{id}}) to the
+ * Undertow layer, so {@link InstrumentedHandler} records per resource method instead of per
+ * deployment.
+ * <p>
+ * Templates are computed once per resource method when the feature is configured.
+ */
+@Provider
+public class RouteTemplateFeature implements DynamicFeature {
+
+    private final String contextPath;
+
+    public RouteTemplateFeature(String contextPath) {
+        this.contextPath = contextPath;
+    }
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        final StringBuilder template = new StringBuilder();
+        appendPath(template, contextPath);
+        appendPath(template, findPath(resourceInfo.getResourceClass()));
+        Path methodPath = resourceInfo.getResourceMethod().getAnnotation(Path.class);
+        appendPath(template, methodPath == null ? null : methodPath.value());
+
+        context.register(new RouteTemplateFilter(template.length() == 0 ? "/" : template.toString()));
+    }
+
+    private static String findPath(Class<?> resourceClass) {
+        for (Class<?> clazz = resourceClass; clazz != null; clazz = clazz.getSuperclass()) {
+            Path path = clazz.getAnnotation(Path.class);
+            if (path != null) {
+                return path.value();
+            }
+        }
+        return null;
+    }
+
+    private static void appendPath(StringBuilder template, String path) {
+        if (path == null || path.isEmpty() || "/".equals(path)) {
+            return;
+        }
+        if (path.charAt(0) != '/') {
+            template.append('/');
+        }
+        template.append(path.endsWith("/") ? path.substring(0, path.length() - 1) : path);
+    }
+
+    private static class RouteTemplateFilter implements ContainerRequestFilter {
+
+        private final String route;
+
+        RouteTemplateFilter(String route) {
+            this.route = route;
+        }
+
+        @Override
+        public void filter(ContainerRequestContext requestContext) {
+            ServletRequestContext servletRequestContext = ServletRequestContext.current();
+            if (servletRequestContext != null) {
+                servletRequestContext.getExchange().putAttachment(InstrumentedHandler.ROUTE, route);
+            }
+        }
+    }
+}
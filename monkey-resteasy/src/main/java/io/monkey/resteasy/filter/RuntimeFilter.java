@@ -13,7 +13,9 @@ import java.util.function.Supplier;
  * Ruby on Rails).
  *
  * @see <a href="https://github.com/rack/rack/blob/2.0.0/lib/rack/runtime.rb">Rack::Runtime</a>
+ * @deprecated use {@link RequestContextFilter}, which also sets the logging MDC
  */
+@Deprecated
 @Provider
 @PreMatching
 public class RuntimeFilter implements ContainerRequestFilter, ContainerResponseFilter {
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.jackson;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes entities in one of Jackson's binary formats, Smile or CBOR. Parsers and
+ * generators come from the format's factory while (de)serialization goes through the application's
+ * {@link ObjectMapper}, so its modules and settings apply unchanged.
+ */
+@Produces({BinaryJacksonProvider.APPLICATION_SMILE, BinaryJacksonProvider.APPLICATION_CBOR})
+@Consumes({BinaryJacksonProvider.APPLICATION_SMILE, BinaryJacksonProvider.APPLICATION_CBOR})
+public class BinaryJacksonProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final String APPLICATION_CBOR = "application/cbor";
+
+    private final ObjectMapper mapper;
+    private final JsonFactory factory;
+    private final MediaType mediaType;
+
+    public BinaryJacksonProvider(ObjectMapper mapper, JsonFactory factory, MediaType mediaType) {
+        this.mapper = mapper;
+        this.factory = factory;
+        this.mediaType = mediaType;
+        factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        factory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
+    public static BinaryJacksonProvider smile(ObjectMapper mapper) {
+        return new BinaryJacksonProvider(mapper, new SmileFactory(), MediaType.valueOf(APPLICATION_SMILE));
+    }
+
+    public static BinaryJacksonProvider cbor(ObjectMapper mapper) {
+        return new BinaryJacksonProvider(mapper, new CBORFactory(), MediaType.valueOf(APPLICATION_CBOR));
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isProvidable(type) && isCompatible(mediaType);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type,
+                           Type genericType,
+                           Annotation[] annotations,
+                           MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders,
+                           InputStream entityStream) throws IOException {
+        try (JsonParser parser = factory.createParser(entityStream)) {
+            return mapper.readerFor(mapper.constructType(genericType)).readValue(parser);
+        }
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isProvidable(type) && isCompatible(mediaType);
+    }
+
+    @Override
+    public long getSize(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object value,
+                        Class<?> type,
+                        Type genericType,
+                        Annotation[] annotations,
+                        MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(entityStream)) {
+            // as the JSON provider, declared types only matter to keep generic type information
+            final ObjectWriter writer = genericType instanceof Class
+                ? mapper.writer() : mapper.writerFor(mapper.constructType(genericType));
+            writer.writeValue(generator, value);
+        }
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    private boolean isCompatible(MediaType mediaType) {
+        return mediaType != null && !mediaType.isWildcardType() && !mediaType.isWildcardSubtype()
+            && this.mediaType.isCompatible(mediaType);
+    }
+
+    private static boolean isProvidable(Class<?> type) {
+        if (type == String.class || type == byte[].class || Response.class.isAssignableFrom(type)
+            || InputStream.class.isAssignableFrom(type) || OutputStream.class.isAssignableFrom(type)
+            || Reader.class.isAssignableFrom(type) || StreamingOutput.class.isAssignableFrom(type)) {
+            return false;
+        }
+        final JsonIgnoreType ignore = type.getAnnotation(JsonIgnoreType.class);
+        return (ignore == null) || !ignore.value();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.jackson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A per-thread buffer collecting a serialized entity, so it can be sent with a
+ * {@code Content-Length} in a single write. Entities outgrowing the limit spill over to the
+ * entity stream and are sent as they are written.
+ */
+final class EntityBuffer extends OutputStream {
+
+    private static final int INITIAL_SIZE = 4096;
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<EntityBuffer> BUFFERS = new ThreadLocal<>();
+
+    private final int limit;
+    private byte[] buf = new byte[INITIAL_SIZE];
+    private int count;
+    private OutputStream target;
+    private boolean spilled;
+    private boolean inUse;
+
+    private EntityBuffer(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return the buffer of the current thread, or a new one when it is being used already
+     */
+    static EntityBuffer acquire(OutputStream target, int limit) {
+        EntityBuffer buffer = BUFFERS.get();
+        if (buffer == null || buffer.limit != limit) {
+            buffer = new EntityBuffer(limit);
+            BUFFERS.set(buffer);
+        } else if (buffer.inUse) {
+            buffer = new EntityBuffer(limit);
+        }
+        buffer.inUse = true;
+        buffer.target = target;
+        return buffer;
+    }
+
+    boolean isSpilled() {
+        return spilled;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Writes the buffered entity to the target and makes the buffer available to the thread again.
+     */
+    void release(boolean flush) throws IOException {
+        try {
+            if (flush && !spilled && count > 0) {
+                target.write(buf, 0, count);
+            }
+        } finally {
+            if (buf.length > MAX_RETAINED_SIZE) {
+                buf = new byte[INITIAL_SIZE];
+            }
+            count = 0;
+            spilled = false;
+            target = null;
+            inUse = false;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (spilled) {
+            target.write(b);
+            return;
+        }
+        ensureCapacity(1);
+        if (spilled) {
+            target.write(b);
+        } else {
+            buf[count++] = (byte) b;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (spilled) {
+            target.write(b, off, len);
+            return;
+        }
+        ensureCapacity(len);
+        if (spilled) {
+            target.write(b, off, len);
+        } else {
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (spilled) {
+            target.flush();
+        }
+    }
+
+    private void ensureCapacity(int len) throws IOException {
+        final int required = count + len;
+        if (required <= buf.length) {
+            return;
+        }
+        if (required > limit) {
+            // too large to buffer, send what we have and stream the rest
+            spilled = true;
+            target.write(buf, 0, count);
+            count = 0;
+            return;
+        }
+        buf = Arrays.copyOf(buf, Math.min(limit, Math.max(buf.length << 1, required)));
+    }
+}
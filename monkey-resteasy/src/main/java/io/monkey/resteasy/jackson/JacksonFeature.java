@@ -44,6 +44,8 @@ public class JacksonFeature implements Feature {
     public boolean configure(FeatureContext context) {
 
         context.register(new JacksonMessageBodyProvider(objectMapper), MessageBodyReader.class, MessageBodyWriter.class);
+        context.register(BinaryJacksonProvider.smile(objectMapper), MessageBodyReader.class, MessageBodyWriter.class);
+        context.register(BinaryJacksonProvider.cbor(objectMapper), MessageBodyReader.class, MessageBodyWriter.class);
         context.register(new JsonProcessingExceptionMapper());
 
         return true;
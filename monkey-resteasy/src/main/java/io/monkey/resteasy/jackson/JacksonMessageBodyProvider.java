@@ -16,29 +16,77 @@
 package io.monkey.resteasy.jackson;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.TreeNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.jaxrs.json.JacksonJaxbJsonProvider;
+import com.google.common.collect.ImmutableSet;
 
 import javax.inject.Inject;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 
 /**
  * A Jersey provider which enables using Jackson to parse request entities into objects and generate
  * response entities from objects.
  * <p/>
  * (Essentially, extends {@link JacksonJaxbJsonProvider} with support for {@link JsonIgnoreType}.)
+ * <p/>
+ * Entities which are a {@link Stream}, an {@link Iterator} or a JDBI {@code ResultIterable} are
+ * written element by element as a JSON
+ * array, or as newline delimited JSON for {@value #APPLICATION_NDJSON}, so exports of many rows use
+ * constant memory. The source is closed once written, also when the client went away.
+ * <p/>
+ * Other entities are serialized by an {@link ObjectWriter} resolved once per type and
+ * {@link JsonView}, into a reused per-thread buffer, and sent with a {@code Content-Length} in a
+ * single write; entities larger than {@value #MAX_BUFFERED_SIZE} bytes are streamed as before.
  * @author michael
  */
 @Provider
 public class JacksonMessageBodyProvider extends JacksonJaxbJsonProvider {
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON_TYPE = MediaType.valueOf(APPLICATION_NDJSON);
+
+    private static final int ELEMENTS_PER_FLUSH = 256;
+    private static final int MAX_BUFFERED_SIZE = 1024 * 1024;
+    private static final int MAX_CACHED_WRITERS = 1024;
+
+    /**
+     * The {@link Iterable}s which are streamed, matched by name so that the library is optional;
+     * other iterables, such as a {@code JsonNode} or a {@code Path}, have serializers of their own.
+     */
+    private static final ImmutableSet<String> STREAMED_ITERABLES = ImmutableSet.of(
+        "org.jdbi.v3.core.result.ResultIterable");
+
+    private static final ClassValue<Boolean> STREAMED = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return !TreeNode.class.isAssignableFrom(type) && isStreamedIterable(type);
+        }
+    };
+
     private final ObjectMapper mapper;
+    private final ObjectWriter elementWriter;
+    private final ConcurrentMap<WriterKey, ObjectWriter> writers = new ConcurrentHashMap<>();
 
     @Inject
     public JacksonMessageBodyProvider(ObjectMapper mapper) {
         this.mapper = mapper;
+        this.elementWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
         setMapper(mapper);
     }
 
@@ -58,6 +106,171 @@ public class JacksonMessageBodyProvider extends JacksonJaxbJsonProvider {
         return isProvidable(type) && super.isWriteable(type, genericType, annotations, mediaType);
     }
 
+    @Override
+    public void writeTo(Object value,
+                        Class<?> type,
+                        Type genericType,
+                        Annotation[] annotations,
+                        MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException {
+        if (value instanceof Stream) {
+            final Stream<?> stream = (Stream<?>) value;
+            try {
+                writeElements(stream.iterator(), mediaType, entityStream);
+            } finally {
+                stream.close();
+            }
+        } else if (value instanceof Iterator) {
+            writeElements((Iterator<?>) value, mediaType, entityStream);
+        } else if (value instanceof Iterable && STREAMED.get(value.getClass())) {
+            writeElements(((Iterable<?>) value).iterator(), mediaType, entityStream);
+        } else if (isPlainJson(annotations, mediaType)) {
+            writeBuffered(value, genericType == null ? type : genericType, view(annotations), httpHeaders, entityStream);
+        } else {
+            super.writeTo(value, type, genericType, annotations, mediaType, httpHeaders, entityStream);
+        }
+    }
+
+    @Override
+    protected boolean hasMatchingMediaType(MediaType mediaType) {
+        return super.hasMatchingMediaType(mediaType) || isNdjson(mediaType);
+    }
+
+    private void writeBuffered(Object value,
+                               Type genericType,
+                               Class<?> view,
+                               MultivaluedMap<String, Object> httpHeaders,
+                               OutputStream entityStream) throws IOException {
+        final EntityBuffer buffer = EntityBuffer.acquire(entityStream, MAX_BUFFERED_SIZE);
+        boolean written = false;
+        try {
+            writer(genericType, view).writeValue(buffer, value);
+            // an interceptor encoding the entity stream, e.g. gzip, changes the length
+            if (!buffer.isSpilled() && !httpHeaders.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+                httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, buffer.size());
+            }
+            written = true;
+        } finally {
+            buffer.release(written);
+        }
+    }
+
+    private ObjectWriter writer(Type genericType, Class<?> view) {
+        final WriterKey key = new WriterKey(genericType, view);
+        ObjectWriter writer = writers.get(key);
+        if (writer == null) {
+            writer = view == null ? mapper.writer() : mapper.writerWithView(view);
+            if (!(genericType instanceof Class)) {
+                // keep the generic type information which the runtime type lacks
+                writer = writer.forType(mapper.constructType(genericType));
+            }
+            writer = writer.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            if (writers.size() < MAX_CACHED_WRITERS) {
+                writers.putIfAbsent(key, writer);
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * @return whether the entity can skip the annotation driven configuration of the base provider
+     */
+    private static boolean isPlainJson(Annotation[] annotations, MediaType mediaType) {
+        if (isNdjson(mediaType)) {
+            return false;
+        }
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                final Class<? extends Annotation> annotationType = annotation.annotationType();
+                if (annotationType != JsonView.class && annotationType.getName().startsWith("com.fasterxml.jackson.")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Class<?> view(Annotation[] annotations) {
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof JsonView) {
+                    final Class<?>[] views = ((JsonView) annotation).value();
+                    return views.length > 0 ? views[0] : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeElements(Iterator<?> elements, MediaType mediaType, OutputStream entityStream) throws IOException {
+        final boolean ndjson = isNdjson(mediaType);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(entityStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (ndjson) {
+                generator.setRootValueSeparator(null);
+            } else {
+                generator.writeStartArray();
+            }
+
+            int count = 0;
+            while (elements.hasNext()) {
+                elementWriter.writeValue(generator, elements.next());
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+                if (++count % ELEMENTS_PER_FLUSH == 0) {
+                    generator.flush();
+                }
+            }
+
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        } finally {
+            if (elements instanceof AutoCloseable) {
+                close((AutoCloseable) elements);
+            }
+        }
+    }
+
+    private static void close(AutoCloseable source) throws IOException {
+        try {
+            source.close();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return whether the entity is written element by element as it is consumed, rather than
+     * serialized as a whole
+     */
+    public static boolean isStreamed(Object value) {
+        return value instanceof Stream || value instanceof Iterator
+            || value instanceof Iterable && STREAMED.get(value.getClass());
+    }
+
+    private static boolean isStreamedIterable(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            if (STREAMED_ITERABLES.contains(c.getName())) {
+                return true;
+            }
+            for (Class<?> i : c.getInterfaces()) {
+                if (isStreamedIterable(i)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNdjson(MediaType mediaType) {
+        return mediaType != null && APPLICATION_NDJSON_TYPE.isCompatible(mediaType) && !mediaType.isWildcardSubtype();
+    }
+
     private boolean isProvidable(Class<?> type) {
         final JsonIgnoreType ignore = type.getAnnotation(JsonIgnoreType.class);
         return (ignore == null) || !ignore.value();
@@ -66,4 +279,31 @@ public class JacksonMessageBodyProvider extends JacksonJaxbJsonProvider {
     public ObjectMapper getObjectMapper() {
         return mapper;
     }
+
+    private static final class WriterKey {
+        private final Type type;
+        private final Class<?> view;
+
+        WriterKey(Type type, Class<?> view) {
+            this.type = type;
+            this.view = view;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof WriterKey)) {
+                return false;
+            }
+            final WriterKey other = (WriterKey) obj;
+            return type.equals(other.type) && Objects.equals(view, other.view);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + Objects.hashCode(view);
+        }
+    }
 }
@@ -31,6 +31,10 @@ public class ZoneIdParam extends AbstractParam<ZoneId> {
         super(input);
     }
 
+    public ZoneIdParam(final String input, final String parameterName) {
+        super(input, parameterName);
+    }
+
     @Override
     protected ZoneId parse(final String input) {
         return ZoneId.of(input);
@@ -16,6 +16,8 @@
 package io.monkey.resteasy.params;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import io.monkey.resteasy.jsr310.ZoneIdParam;
 import io.monkey.resteasy.validation.ResteasyParameterNameProvider;
 
 import javax.annotation.Nullable;
@@ -36,12 +38,16 @@ import java.lang.reflect.Type;
  * value provided and the name of the parameter, so if value parsing fails the parameter name can be used in the error
  * message. If the param class does not have a two-string constructor this provider will return null, causing jersey
  * to use the single-string constructor for the parameter type as it normally would.</p>
+ * <p>Parameters of low-cardinality types, such as {@link BooleanParam} and {@link ZoneIdParam}, are
+ * immutable and kept in a small {@link InternCache} per resource parameter.</p>
  *
  * @author michael
  */
 @Provider
 public class AbstractParamConverterProvider implements ParamConverterProvider {
 
+    private static final ImmutableSet<Class<?>> INTERNED = ImmutableSet.of(BooleanParam.class, ZoneIdParam.class);
+
     public AbstractParamConverterProvider() {
     }
 
@@ -58,6 +64,7 @@ public class AbstractParamConverterProvider implements ParamConverterProvider {
                 // leaving Jersey to handle these parameters as it normally would.
                 return null;
             }
+            final InternCache<T> cache = INTERNED.contains(rawType) ? new InternCache<>() : null;
             return new ParamConverter<T>() {
                 @Override
                 @Nullable
@@ -65,24 +72,25 @@ public class AbstractParamConverterProvider implements ParamConverterProvider {
                     if (rawType != NonEmptyStringParam.class && Strings.isNullOrEmpty(value)) {
                         return null;
                     }
+                    return cache == null ? create(value) : cache.get(value, this::create);
+                }
+
+                /**
+                 * Constructs the parameter, mapping the failures the same way whether or not it is
+                 * interned.
+                 */
+                private T create(String value) {
                     try {
-                        return _fromString(value);
+                        return constructor.newInstance(value, parameterName);
                     } catch (InvocationTargetException ex) {
                         final Throwable cause = ex.getCause();
-                        if (cause instanceof WebApplicationException) {
-                            throw (WebApplicationException) cause;
-                        } else {
-                            throw new WebApplicationException(cause);
-                        }
+                        throw cause instanceof WebApplicationException
+                                ? (WebApplicationException) cause : new WebApplicationException(cause);
                     } catch (final Exception ex) {
                         throw new ProcessingException(ex);
                     }
                 }
 
-                protected T _fromString(String value) throws Exception {
-                    return constructor.newInstance(value, parameterName);
-                }
-
                 @Override
                 public String toString(T value) throws IllegalArgumentException {
                     if (value == null) {
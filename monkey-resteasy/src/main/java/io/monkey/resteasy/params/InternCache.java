@@ -0,0 +1,43 @@
+package io.monkey.resteasy.params;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A small cache of the values parsed from low-cardinality parameters, such as enum constants or
+ * time-zone IDs, so repeated inputs skip parsing. Once full, further inputs are parsed every time,
+ * so arbitrary client input cannot grow it.
+ *
+ * @param <T> the type of parsed values
+ */
+public final class InternCache<T> {
+
+    private static final int DEFAULT_MAX_SIZE = 256;
+
+    private final ConcurrentMap<String, T> values = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    public InternCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public InternCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the cached value of the input, or the value computed and, if there is room, cached;
+     * exceptions of the parser are propagated and nothing is cached for the input
+     */
+    public T get(String input, Function<String, T> parser) {
+        T value = values.get(input);
+        if (value == null) {
+            value = parser.apply(input);
+            if (value != null && values.size() < maxSize) {
+                values.putIfAbsent(input, value);
+            }
+        }
+        return value;
+    }
+}
@@ -24,18 +24,29 @@ public class UUIDParam extends AbstractParam<UUID> {
 
     @Override
     protected UUID parse(@Nullable String input) {
-        // From UUID RFC 4122 spec, a UUID contains 32 hex digits with 4 dashes. fromString will
-        // ensure that only hex exists and that there are 4 dashes, but does no length checking, so
-        // the input could have additional hex digits appended and no error would be raised. Since
-        // the spec clearly defines the length to be 36, we'll ensure the input conforms. Some UUID
-        // implementations are lenient and allow absent dashes (thus making the total length 32),
-        // but since fromString requires dashes we don't need to worry about supporting a range of
-        // lengths.
-        if (input != null && input.length() != 36) {
+        // From UUID RFC 4122 spec, a UUID contains 32 hex digits with 4 dashes. fromString does no
+        // length checking and splits the input into substrings, so the canonical form is parsed
+        // here directly: exactly 36 characters, dashes at 8, 13, 18 and 23, hex digits elsewhere.
+        if (input == null || input.length() != 36) {
             throw new IllegalArgumentException("Expecting a UUID of 36 in length");
         }
 
-        return UUID.fromString(input);
+        return new UUID(parseHex(input, 0, 8) << 32 | parseHex(input, 9, 13) << 16 | parseHex(input, 14, 18),
+                parseHex(input, 19, 23) << 48 | parseHex(input, 24, 36));
     }
 
+    private static long parseHex(CharSequence input, int start, int end) {
+        if (start > 0 && input.charAt(start - 1) != '-') {
+            throw new IllegalArgumentException("Expecting a dash at " + (start - 1));
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = Character.digit(input.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Expecting a hex digit at " + i);
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
 }
@@ -15,14 +15,33 @@
 
 package io.monkey.resteasy.setup;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Provider;
 import org.jboss.resteasy.spi.*;
 
+import javax.ws.rs.BeanParam;
+import javax.ws.rs.CookieParam;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.MatrixParam;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+
 /**
+ * Creates per-request resources through Guice. Property injection of JAX-RS fields and setters
+ * is only performed for classes which declare any, most resources get everything from Guice.
+ *
  * @author michael
  */
 class GuiceResourceFactory implements ResourceFactory {
 
+    private static final ImmutableSet<Class<? extends Annotation>> INJECTED = ImmutableSet.of(
+        Context.class, PathParam.class, QueryParam.class, HeaderParam.class, CookieParam.class,
+        MatrixParam.class, FormParam.class, BeanParam.class);
+
     private final Provider provider;
     private final Class<?> scannableClass;
     private PropertyInjector propertyInjector;
@@ -39,13 +58,17 @@ class GuiceResourceFactory implements ResourceFactory {
 
     @Override
     public void registered(ResteasyProviderFactory factory) {
-        propertyInjector = factory.getInjectorFactory().createPropertyInjector(scannableClass, factory);
+        if (hasInjectedProperties(scannableClass)) {
+            propertyInjector = factory.getInjectorFactory().createPropertyInjector(scannableClass, factory);
+        }
     }
 
     @Override
     public Object createResource(final HttpRequest request, final HttpResponse response, final ResteasyProviderFactory factory) {
         final Object resource = provider.get();
-        propertyInjector.inject(request, response, resource);
+        if (propertyInjector != null) {
+            propertyInjector.inject(request, response, resource);
+        }
         return resource;
     }
 
@@ -56,4 +79,25 @@ class GuiceResourceFactory implements ResourceFactory {
     @Override
     public void unregistered() {
     }
+
+    static boolean hasInjectedProperties(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            if (hasInjectedProperties(c.getDeclaredFields()) || hasInjectedProperties(c.getDeclaredMethods())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasInjectedProperties(AccessibleObject[] members) {
+        for (AccessibleObject member : members) {
+            for (Annotation annotation : member.getAnnotations()) {
+                final Class<? extends Annotation> annotationType = annotation.annotationType();
+                if (INJECTED.contains(annotationType) || annotationType.getName().startsWith("org.jboss.resteasy.annotations.")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
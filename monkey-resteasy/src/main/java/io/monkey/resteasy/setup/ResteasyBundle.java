@@ -5,6 +5,8 @@ import io.monkey.Configuration;
 import io.monkey.ConfiguredBundle;
 import io.monkey.resteasy.ResteasyConfiguration;
 import io.monkey.resteasy.ResteasyFactory;
+import io.monkey.resteasy.async.AsyncFeature;
+import io.monkey.resteasy.sse.SseBroadcasters;
 import io.monkey.resteasy.validation.Validators;
 import io.monkey.setup.Bootstrap;
 import io.monkey.setup.Environment;
@@ -45,7 +47,12 @@ public class ResteasyBundle<T extends Configuration> implements ConfiguredBundle
 
         final String contextPath = deploymentInfo.getContextPath();
 
-        environment.guicify().register(new ResteasyModule(manager, contextPath), new RequestScopeModule());
+        final AsyncFeature asyncFeature = resteasyFactory.getAsync().build(environment);
+
+        final SseBroadcasters broadcasters = resteasyFactory.getSse().build(environment);
+
+        environment.guicify().register(new ResteasyModule(manager, contextPath, asyncFeature, broadcasters),
+            new RequestScopeModule());
 
         environment.lifecycle().manage(new ResteasyManager(environment, deployment, contextPath));
 
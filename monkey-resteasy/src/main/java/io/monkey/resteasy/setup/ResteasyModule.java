@@ -16,14 +16,25 @@
 package io.monkey.resteasy.setup;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.name.Names;
 import io.monkey.inject.advise.Advises;
 import io.monkey.resteasy.actuator.ApplicationActuatorResource;
+import io.monkey.resteasy.async.AsyncFeature;
 import io.monkey.resteasy.caching.CacheControlledResponseFeature;
+import io.monkey.resteasy.caching.CoalesceFeature;
+import io.monkey.resteasy.caching.ETagFeature;
 import io.monkey.resteasy.errors.ErrorsMapperFeature;
+import io.monkey.resteasy.filter.DeadlineFeature;
+import io.monkey.resteasy.filter.RouteTemplateFeature;
 import io.monkey.resteasy.jackson.JacksonFeature;
 import io.monkey.resteasy.optional.OptionalParamFeature;
 import io.monkey.resteasy.params.BasicParamFeature;
+import io.monkey.resteasy.sse.SseBroadcasters;
+import io.monkey.resteasy.streaming.StreamingBodyFeature;
 import io.monkey.resteasy.validation.HibernateValidationFeature;
+import io.monkey.undertow.HttpServerFactory;
+import io.monkey.undertow.handler.PingHandler;
 import io.undertow.server.handlers.PathHandler;
 import io.undertow.servlet.api.DeploymentManager;
 import org.jboss.resteasy.wadl.ResteasyWadlDefaultResource;
@@ -34,8 +45,12 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.Variant;
 import javax.ws.rs.ext.RuntimeDelegate;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
 import java.util.function.UnaryOperator;
 
+import static com.google.inject.matcher.Matchers.any;
+
 /**
  * @author michael
  */
@@ -44,10 +59,15 @@ class ResteasyModule extends AbstractModule {
     private final static Logger logger = LoggerFactory.getLogger(ResteasyModule.class);
     private final DeploymentManager manager;
     private final String contextPath;
+    private final AsyncFeature asyncFeature;
+    private final SseBroadcasters broadcasters;
 
-    public ResteasyModule(DeploymentManager manager, String contextPath) {
+    public ResteasyModule(DeploymentManager manager, String contextPath, AsyncFeature asyncFeature,
+                          SseBroadcasters broadcasters) {
         this.manager = manager;
         this.contextPath = contextPath;
+        this.asyncFeature = asyncFeature;
+        this.broadcasters = broadcasters;
     }
 
     @Override
@@ -63,16 +83,39 @@ class ResteasyModule extends AbstractModule {
         bind(BasicParamFeature.class);
         bind(OptionalParamFeature.class);
         bind(CacheControlledResponseFeature.class);
+        bind(ETagFeature.class);
+        bind(CoalesceFeature.class);
         bind(ErrorsMapperFeature.class);
+        bind(RouteTemplateFeature.class).toInstance(new RouteTemplateFeature(contextPath));
+        bind(DeadlineFeature.class);
+        bind(StreamingBodyFeature.class);
+        bind(AsyncFeature.class).toInstance(asyncFeature);
+        bind(ExecutorService.class).annotatedWith(Names.named(AsyncFeature.EXECUTOR)).toInstance(asyncFeature.getExecutor());
+        bindInterceptor(any(), new AbstractMatcher<Method>() {
+            @Override
+            public boolean matches(Method method) {
+                return AsyncFeature.hasSuspendedParameter(method);
+            }
+        }, asyncFeature.suspendedTimeout());
+        bind(SseBroadcasters.class).toInstance(broadcasters);
 
         bind(ResteasyWadlDefaultResource.class);
         bind(ApplicationActuatorResource.class);
     }
 
     @Advises
-    UnaryOperator<PathHandler> setupResteasyHandler() {
+    UnaryOperator<PathHandler> setupResteasyHandler(HttpServerFactory serverFactory) {
         logger.info("setup resteasy http handler at {}.",contextPath);
-        return pathHandler -> pathHandler.addPrefixPath(contextPath, new ResteasyHandlerProvider(manager).get());
+        serverFactory.addAdminContextPath(contextPath);
+        return pathHandler -> {
+            if (serverFactory.getDispatchMode() == HttpServerFactory.DispatchMode.IO) {
+                // answer health probes from the io thread instead of the servlet deployment
+                String pingPath = (contextPath.endsWith("/") ? contextPath : contextPath + "/") + "__admin/ping";
+                pathHandler.addExactPath(pingPath, new PingHandler());
+                logger.info("setup non-blocking ping handler at {}.", pingPath);
+            }
+            return pathHandler.addPrefixPath(contextPath, new ResteasyHandlerProvider(manager).get());
+        };
     }
 
 }
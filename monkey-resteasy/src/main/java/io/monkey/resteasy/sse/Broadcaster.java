@@ -0,0 +1,334 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.sse;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.protocol.http2.Http2ServerConnection;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import org.xnio.IoUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Sends events to the {@link SseEventSink}s subscribed to it. An event's data is serialized once,
+ * whatever the number of subscribers, and the resulting event is queued for each of them.
+ * <p>
+ * Each subscriber buffers at most the configured number of events and is written to by a shared
+ * executor, one task per subscriber at a time, so that the broadcasting thread never waits for a
+ * client. When a buffer is full, the {@link SlowConsumerPolicy} decides whether the subscriber
+ * loses its oldest event or its connection.
+ * <p>
+ * The servlet writes of the sinks block, so a client which stops reading holds an executor thread
+ * until its write times out: its stream is then ended, which fails the write and releases the
+ * thread for the other subscribers. Under HTTP/2 only the stream is reset, the other requests
+ * multiplexed on its connection carry on.
+ * <pre>
+ * &#64;GET
+ * &#64;Produces(MediaType.SERVER_SENT_EVENTS)
+ * public void prices(&#64;Context SseEventSink sink, &#64;Context Sse sse) {
+ *     broadcasters.get("prices").subscribe(sink, sse);
+ * }
+ * </pre>
+ */
+public class Broadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(Broadcaster.class);
+
+    private final String name;
+    private final ObjectMapper mapper;
+    private final Executor executor;
+    private final int bufferSize;
+    private final SlowConsumerPolicy policy;
+    private final long writeTimeoutNanos;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Meter events;
+    private final Meter dropped;
+    private final Meter disconnected;
+    private volatile Sse sse;
+
+    Broadcaster(String name, ObjectMapper mapper, Executor executor, int bufferSize, SlowConsumerPolicy policy,
+                long writeTimeoutNanos, MetricRegistry metrics) {
+        this.name = name;
+        this.mapper = mapper;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.policy = policy;
+        this.writeTimeoutNanos = writeTimeoutNanos;
+        this.events = metrics.meter(name(Broadcaster.class, name, "events"));
+        this.dropped = metrics.meter(name(Broadcaster.class, name, "dropped"));
+        this.disconnected = metrics.meter(name(Broadcaster.class, name, "disconnected"));
+        metrics.register(name(Broadcaster.class, name, "subscribers"), (Gauge<Integer>) subscribers::size);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of subscribers
+     */
+    public int size() {
+        return subscribers.size();
+    }
+
+    /**
+     * Subscribes a sink to the events broadcast from now on, until it is closed.
+     */
+    public void subscribe(SseEventSink sink, Sse sse) {
+        this.sse = sse;
+        subscribers.add(new Subscriber(sink));
+    }
+
+    /**
+     * Broadcasts an unnamed event whose data is the JSON representation of the given object.
+     */
+    public void broadcast(Object data) {
+        broadcast(null, null, data);
+    }
+
+    /**
+     * Broadcasts an event whose data is the JSON representation of the given object.
+     *
+     * @param name the event name, or {@code null}
+     * @param id   the event id, or {@code null}
+     */
+    public void broadcast(String name, String id, Object data) {
+        final Sse sse = this.sse;
+        if (sse == null || subscribers.isEmpty()) {
+            return;
+        }
+        final String json;
+        try {
+            json = data instanceof String ? (String) data : mapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        broadcast(sse.newEventBuilder()
+            .name(name)
+            .id(id)
+            .mediaType(MediaType.TEXT_PLAIN_TYPE)
+            .data(String.class, json)
+            .build());
+    }
+
+    /**
+     * Broadcasts an event as it is, which is shared by all the subscribers.
+     */
+    public void broadcast(OutboundSseEvent event) {
+        events.mark();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event, false);
+        }
+    }
+
+    /**
+     * Sends a comment to the idle subscribers, so that the connections which were closed by
+     * their clients are noticed.
+     */
+    void heartbeat() {
+        final Sse sse = this.sse;
+        if (sse == null || subscribers.isEmpty()) {
+            return;
+        }
+        final OutboundSseEvent event = sse.newEventBuilder().comment("heartbeat").build();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event, true);
+        }
+    }
+
+    /**
+     * Disconnects the subscribers whose current write started more than the write timeout ago.
+     */
+    void expireWrites() {
+        final long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.expireWrite(now);
+        }
+    }
+
+    /**
+     * Closes all the subscribers' connections.
+     */
+    public void close() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    private final class Subscriber {
+        private static final long IDLE = Long.MIN_VALUE;
+
+        private final SseEventSink sink;
+        private final HttpServerExchange exchange;
+        private final ArrayDeque<OutboundSseEvent> buffer = new ArrayDeque<>();
+        private volatile long writeStarted = IDLE;
+        private boolean scheduled;
+        private boolean closed;
+
+        Subscriber(SseEventSink sink) {
+            this.sink = sink;
+            final ServletRequestContext context = ServletRequestContext.current();
+            this.exchange = context == null ? null : context.getExchange();
+        }
+
+        void offer(OutboundSseEvent event, boolean idleOnly) {
+            synchronized (this) {
+                if (closed || (idleOnly && (scheduled || !buffer.isEmpty()))) {
+                    return;
+                }
+                if (buffer.size() >= bufferSize) {
+                    if (policy == SlowConsumerPolicy.DISCONNECT) {
+                        disconnected.mark();
+                        closeLater();
+                        return;
+                    }
+                    buffer.poll();
+                    dropped.mark();
+                }
+                buffer.add(event);
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            schedule(this::drain);
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                buffer.clear();
+            }
+            subscribers.remove(this);
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                logger.debug("Failed to close a subscriber of {}", name, e);
+            }
+        }
+
+        /**
+         * Closes the sink from the executor, or ends the stream when a write is in progress, since
+         * the sink cannot be closed in the middle of it.
+         */
+        private void closeLater() {
+            closed = true;
+            buffer.clear();
+            subscribers.remove(this);
+            if (!scheduled) {
+                scheduled = true;
+                schedule(this::close);
+            } else {
+                abort();
+            }
+        }
+
+        /**
+         * Fails the blocked write of the subscriber, after which the draining thread closes the
+         * sink. An HTTP/2 exchange has a connection object of its own, whose close resets its
+         * stream with {@code CANCEL} and leaves the shared connection open; as a last resort, an
+         * HTTP/1.x connection, which carries no other request meanwhile, is closed.
+         */
+        private void abort() {
+            if (exchange == null) {
+                return;
+            }
+            if (exchange.getConnection() instanceof Http2ServerConnection) {
+                IoUtils.safeClose((Http2ServerConnection) exchange.getConnection());
+            } else if (exchange.isHttp11() || exchange.isHttp10()) {
+                IoUtils.safeClose(exchange.getConnection());
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                final OutboundSseEvent event;
+                synchronized (this) {
+                    if (closed) {
+                        break;
+                    }
+                    event = buffer.poll();
+                    if (event == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                if (sink.isClosed()) {
+                    close();
+                    return;
+                }
+                writeStarted = System.nanoTime();
+                try {
+                    sink.send(event).toCompletableFuture().join();
+                } catch (RuntimeException e) {
+                    logger.debug("Failed to send an event of {}, unsubscribing", name, e);
+                    close();
+                    return;
+                } finally {
+                    writeStarted = IDLE;
+                }
+            }
+            close();
+        }
+
+        void expireWrite(long now) {
+            final long started = writeStarted;
+            if (started == IDLE || now - started < writeTimeoutNanos) {
+                return;
+            }
+            synchronized (this) {
+                closed = true;
+                buffer.clear();
+            }
+            if (subscribers.remove(this)) {
+                disconnected.mark();
+            }
+            logger.debug("Timed out writing an event of {}, disconnecting", name);
+            abort();
+        }
+
+        private void schedule(Runnable task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // the broadcaster is being stopped
+                synchronized (this) {
+                    closed = true;
+                    buffer.clear();
+                }
+                subscribers.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.sse;
+
+/**
+ * What a {@link Broadcaster} does with a subscriber whose buffer is full.
+ */
+public enum SlowConsumerPolicy {
+
+    /**
+     * Drops the oldest buffered event to make room for the new one.
+     */
+    DROP,
+
+    /**
+     * Closes the subscriber's connection, the client reconnects once it catches up.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.sse;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.monkey.lifecycle.Managed;
+import io.monkey.server.Server;
+import io.monkey.server.ServerLifecycleListener;
+import io.monkey.util.Duration;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The named {@link Broadcaster}s of the application, created on first use and sharing one
+ * executor; inject it into the resources producing server-sent events.
+ * <p>
+ * Idle subscribers are sent a comment every heartbeat interval, which reveals the connections
+ * closed by their clients, and subscribers whose write outlasts the write timeout are
+ * disconnected. The subscribers' connections are closed as soon as the server drains,
+ * an open event stream would otherwise hold the drain for its whole grace period; the clients then
+ * reconnect to another instance. Subscribers arriving later are closed when the application stops.
+ */
+public class SseBroadcasters implements Managed, ServerLifecycleListener {
+
+    private final ObjectMapper mapper;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final int bufferSize;
+    private final SlowConsumerPolicy policy;
+    private final Duration heartbeat;
+    private final Duration writeTimeout;
+    private final MetricRegistry metrics;
+    private final ConcurrentMap<String, Broadcaster> broadcasters = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> heartbeats;
+    private ScheduledFuture<?> writeTimeouts;
+
+    public SseBroadcasters(ObjectMapper mapper, ExecutorService executor, ScheduledExecutorService scheduler,
+                           int bufferSize, SlowConsumerPolicy policy, Duration heartbeat, Duration writeTimeout,
+                           MetricRegistry metrics) {
+        this.mapper = mapper;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.bufferSize = bufferSize;
+        this.policy = policy;
+        this.heartbeat = heartbeat;
+        this.writeTimeout = writeTimeout;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the broadcaster of the given name, created if needed
+     */
+    public Broadcaster get(String name) {
+        return broadcasters.computeIfAbsent(name,
+            n -> new Broadcaster(n, mapper, executor, bufferSize, policy, writeTimeout.toNanoseconds(), metrics));
+    }
+
+    @Override
+    public void start() {
+        final long period = heartbeat.toMilliseconds();
+        heartbeats = scheduler.scheduleAtFixedRate(() -> broadcasters.values().forEach(Broadcaster::heartbeat),
+            period, period, TimeUnit.MILLISECONDS);
+        // writes are timed out between one and one and a half write timeout
+        final long sweep = Math.max(writeTimeout.toMilliseconds() / 2, 1);
+        writeTimeouts = scheduler.scheduleAtFixedRate(() -> broadcasters.values().forEach(Broadcaster::expireWrites),
+            sweep, sweep, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (heartbeats != null) {
+            heartbeats.cancel(false);
+            writeTimeouts.cancel(false);
+        }
+        close();
+    }
+
+    @Override
+    public void serverStarted(Server server) {
+    }
+
+    @Override
+    public void serverDraining(Server server) {
+        close();
+    }
+
+    /**
+     * Closes the connections of all the subscribers.
+     */
+    public void close() {
+        broadcasters.values().forEach(Broadcaster::close);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.streaming;
+
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.DefaultByteBufferPool;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import io.undertow.util.AttachmentKey;
+import org.xnio.channels.BlockingReadableByteChannel;
+import org.xnio.channels.StreamSourceChannel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A request body read straight from the connection into pooled direct buffers, for resources
+ * ingesting payloads too large to hold in memory.
+ * <p>
+ * The buffers handed to {@link #forEach} are only valid during the callback and are reused for the
+ * next chunk.
+ */
+public class ByteBufferBody {
+
+    static final AttachmentKey<ByteBufferBody> BODY = AttachmentKey.create(ByteBufferBody.class);
+
+    private static final ByteBufferPool FALLBACK_POOL = new DefaultByteBufferPool(false, 16 * 1024);
+
+    private final ReadableByteChannel channel;
+    private final ByteBufferPool pool;
+
+    ByteBufferBody(ReadableByteChannel channel, ByteBufferPool pool) {
+        this.channel = channel;
+        this.pool = pool;
+    }
+
+    /**
+     * Takes the request channel of the exchange before the servlet layer wraps it into a stream.
+     */
+    static ByteBufferBody attach(HttpServerExchange exchange) {
+        ByteBufferBody body = exchange.getAttachment(BODY);
+        if (body == null && exchange.isRequestChannelAvailable()) {
+            StreamSourceChannel requestChannel = exchange.getRequestChannel();
+            body = new ByteBufferBody(new BlockingReadableByteChannel(requestChannel),
+                exchange.getConnection().getByteBufferPool());
+            exchange.putAttachment(BODY, body);
+        }
+        return body;
+    }
+
+    /**
+     * @return the body attached to the current exchange, or a body reading {@code entityStream}
+     */
+    static ByteBufferBody current(InputStream entityStream) {
+        ServletRequestContext context = ServletRequestContext.current();
+        ByteBufferBody body = context == null ? null : context.getExchange().getAttachment(BODY);
+        return body != null ? body : new ByteBufferBody(Channels.newChannel(entityStream), FALLBACK_POOL);
+    }
+
+    /**
+     * @return the body as a blocking channel
+     */
+    public ReadableByteChannel channel() {
+        return channel;
+    }
+
+    /**
+     * Reads the whole body, one pooled buffer at a time.
+     *
+     * @return the number of bytes read
+     */
+    public long forEach(BufferConsumer consumer) throws IOException {
+        long total = 0;
+        try (PooledByteBuffer pooled = pool.allocate()) {
+            final ByteBuffer buffer = pooled.getBuffer();
+            while (true) {
+                buffer.clear();
+                final int read = channel.read(buffer);
+                if (read < 0) {
+                    return total;
+                }
+                buffer.flip();
+                total += read;
+                consumer.accept(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes the whole body to {@code target}, e.g. a {@link java.nio.channels.FileChannel}.
+     *
+     * @return the number of bytes transferred
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        return forEach(buffer -> {
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    public interface BufferConsumer {
+        void accept(ByteBuffer buffer) throws IOException;
+    }
+}
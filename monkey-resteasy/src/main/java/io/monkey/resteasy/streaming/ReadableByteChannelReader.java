@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.streaming;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads request entities of type {@link ReadableByteChannel}, a blocking view of the connection.
+ */
+@Consumes(MediaType.WILDCARD)
+public class ReadableByteChannelReader implements MessageBodyReader<ReadableByteChannel> {
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return ReadableByteChannel.class == type;
+    }
+
+    @Override
+    public ReadableByteChannel readFrom(Class<ReadableByteChannel> type, Type genericType, Annotation[] annotations,
+                                        MediaType mediaType, MultivaluedMap<String, String> httpHeaders,
+                                        InputStream entityStream) {
+        return ByteBufferBody.current(entityStream).channel();
+    }
+}
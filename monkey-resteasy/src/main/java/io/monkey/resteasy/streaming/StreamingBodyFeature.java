@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.resteasy.streaming;
+
+import io.monkey.util.Size;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.servlet.handlers.ServletRequestContext;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Feature;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.ext.Provider;
+import java.lang.reflect.Method;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Lets resource methods take their entity as a {@link ReadableByteChannel} or a
+ * {@link ByteBufferBody}, read from the Undertow request channel into pooled direct buffers
+ * instead of through the servlet input stream and intermediate byte arrays.
+ * <p>
+ * The request channel is taken by a filter of the streaming methods before the servlet layer
+ * wraps it; other methods are left untouched.
+ */
+@Provider
+public class StreamingBodyFeature implements Feature {
+
+    @Override
+    public boolean configure(FeatureContext context) {
+        context.register(new ReadableByteChannelReader());
+        context.register(new ByteBufferBodyReader());
+        context.register(new StreamingMethodBinder());
+        return true;
+    }
+
+    private static class StreamingMethodBinder implements DynamicFeature {
+
+        @Override
+        public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+            final Method method = resourceInfo.getResourceMethod();
+            if (!isStreaming(method)) {
+                return;
+            }
+
+            final MaxEntitySize maxEntitySize = method.getAnnotation(MaxEntitySize.class);
+            final long limit = maxEntitySize == null ? 0 : parseLimit(maxEntitySize.value());
+            context.register(new RequestChannelFilter(limit));
+        }
+
+        private static boolean isStreaming(Method method) {
+            for (Class<?> type : method.getParameterTypes()) {
+                if (type == ReadableByteChannel.class || type == ByteBufferBody.class) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static long parseLimit(String value) {
+            return value.trim().startsWith("-") ? -1 : Size.parse(value).toBytes();
+        }
+    }
+
+    @Priority(Priorities.ENTITY_CODER)
+    private static class RequestChannelFilter implements ContainerRequestFilter {
+
+        private final long maxEntitySize;
+
+        RequestChannelFilter(long maxEntitySize) {
+            this.maxEntitySize = maxEntitySize;
+        }
+
+        @Override
+        public void filter(ContainerRequestContext requestContext) {
+            ServletRequestContext servletRequestContext = ServletRequestContext.current();
+            if (servletRequestContext == null) {
+                return;
+            }
+
+            HttpServerExchange exchange = servletRequestContext.getExchange();
+            if (maxEntitySize != 0) {
+                exchange.setMaxEntitySize(maxEntitySize);
+            }
+            ByteBufferBody.attach(exchange);
+        }
+    }
+}
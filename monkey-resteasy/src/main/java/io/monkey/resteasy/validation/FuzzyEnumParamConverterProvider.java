@@ -3,6 +3,7 @@ package io.monkey.resteasy.validation;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import io.monkey.resteasy.errors.ErrorMessage;
+import io.monkey.resteasy.params.InternCache;
 import io.monkey.util.Enums;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +32,8 @@ import static io.monkey.resteasy.validation.ResteasyParameterNameProvider.getPar
  * provides converters for all enum types used as resource parameters that provide better error handling. If an
  * invalid value is provided for the parameter a {@code 400 Bad Request} is returned and the error message will
  * include the parameter name and a list of valid values.</p>
+ *
+ * <p>Resolved constants are kept in a small {@link InternCache} per resource parameter.</p>
  */
 @SuppressWarnings("unchecked")
 @Provider
@@ -48,6 +51,7 @@ public class FuzzyEnumParamConverterProvider implements ParamConverterProvider {
         final Enum<?>[] constants = type.getEnumConstants();
         final String parameterName = getParameterNameFromAnnotations(annotations).orElse("Parameter");
         Method fromStringMethod = AccessController.doPrivileged(getStringToObjectMethodPA(rawType));
+        final InternCache<T> cache = new InternCache<>();
 
         return new ParamConverter<T>() {
             @Override
@@ -57,6 +61,10 @@ public class FuzzyEnumParamConverterProvider implements ParamConverterProvider {
                     return null;
                 }
 
+                return cache.get(value, this::resolve);
+            }
+
+            private T resolve(String value) {
                 if (fromStringMethod != null) {
                     try {
                         Object constant = fromStringMethod.invoke(null, value);
@@ -35,6 +35,7 @@ import javax.validation.executable.ExecutableType;
 import javax.validation.executable.ValidateOnExecution;
 import javax.validation.groups.Default;
 import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.MethodDescriptor;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ResourceInfo;
 import java.lang.reflect.Method;
@@ -43,6 +44,8 @@ import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author michael
@@ -58,6 +61,7 @@ class HibernateGeneralValidatorImpl implements GeneralValidator {
     private final Validator validator;
     private boolean isExecutableValidationEnabled;
     private ExecutableType[] defaultValidatedExecutableTypes;
+    private final ConcurrentMap<Method, ValidationPlan> plans = new ConcurrentHashMap<>();
 
     public HibernateGeneralValidatorImpl(Validator validator,
                                          boolean isExecutableValidationEnabled,
@@ -73,8 +77,6 @@ class HibernateGeneralValidatorImpl implements GeneralValidator {
 
         ResourceInfo resourceInfo = ResteasyProviderFactory.getContextData(ResourceInfo.class);
 
-        final Class<?>[] groupsInfo = getGroup(resourceInfo.getResourceMethod());
-
         final Set<ConstraintViolation<Object>> violations = new HashSet<>();
         final BeanDescriptor beanDescriptor = validator.getConstraintsForClass(resourceInfo.getClass());
 
@@ -89,14 +91,13 @@ class HibernateGeneralValidatorImpl implements GeneralValidator {
 
     @Override
     public void validateAllParameters(HttpRequest request, Object object, Method method, Object[] parameterValues, Class<?>... groups) {
-        if (method.getParameterTypes().length == 0) {
+        final ValidationPlan plan = getPlan(method);
+        if (!plan.validateParameters) {
             return;
         }
 
-        final Class<?>[] groupsInfo = getGroup(method);
-
         final Set<ConstraintViolation<Object>> violations =
-                validator.forExecutables().validateParameters(object, method, parameterValues, groupsInfo);
+                validator.forExecutables().validateParameters(object, method, parameterValues, plan.getParameterGroups());
 
         if (!violations.isEmpty()) {
             throw new ResteasyViolationException(violations, method);
@@ -105,17 +106,13 @@ class HibernateGeneralValidatorImpl implements GeneralValidator {
 
     @Override
     public void validateReturnValue(HttpRequest request, Object object, Method method, Object returnValue, Class<?>... groups) {
-        // If the Validated annotation is on a method, then validate the response with
-        // the specified constraint group.
-        final Class<?>[] groupsInfo;
-        if (method.isAnnotationPresent(Validated.class)) {
-            groupsInfo = method.getAnnotation(Validated.class).value();
-        } else {
-            groupsInfo = new Class<?>[]{Default.class};
+        final ValidationPlan plan = getPlan(method);
+        if (!plan.validateReturnValue) {
+            return;
         }
 
         final Set<ConstraintViolation<Object>> violations =
-                validator.forExecutables().validateReturnValue(object, method, returnValue, groupsInfo);
+                validator.forExecutables().validateReturnValue(object, method, returnValue, plan.returnValueGroups);
 
         if (!violations.isEmpty()) {
             logger.trace("Response validation failed: {}", ConstraintViolations.copyOf(violations));
@@ -123,6 +120,67 @@ class HibernateGeneralValidatorImpl implements GeneralValidator {
         }
     }
 
+    private ValidationPlan getPlan(Method method) {
+        ValidationPlan plan = plans.get(method);
+        if (plan == null) {
+            plan = new ValidationPlan(method);
+            plans.putIfAbsent(method, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * What the validation of a resource method needs, worked out on its first invocation: whether
+     * its parameters or return value are constrained at all, and under which groups.
+     */
+    private class ValidationPlan {
+        private final boolean validateParameters;
+        private final boolean validateReturnValue;
+        private final Class<?>[] parameterGroups;
+        // the error is thrown anew each time, an exception instance must not be shared by requests
+        private final String parameterGroupsError;
+        private final int parameterGroupsStatus;
+        private final Class<?>[] returnValueGroups;
+
+        ValidationPlan(Method method) {
+            final MethodDescriptor descriptor = method.getParameterCount() == 0 && method.getReturnType() == void.class
+                    ? null
+                    : validator.getConstraintsForClass(method.getDeclaringClass())
+                        .getConstraintsForMethod(method.getName(), method.getParameterTypes());
+            this.validateParameters = descriptor != null && method.getParameterCount() > 0
+                    && descriptor.hasConstrainedParameters();
+            this.validateReturnValue = descriptor != null && descriptor.hasConstrainedReturnValue();
+
+            Class<?>[] groups = null;
+            String error = null;
+            int status = 0;
+            if (validateParameters) {
+                try {
+                    groups = getGroup(method);
+                } catch (WebApplicationException e) {
+                    error = e.getMessage();
+                    status = e.getResponse().getStatus();
+                }
+            }
+            this.parameterGroups = groups;
+            this.parameterGroupsError = error;
+            this.parameterGroupsStatus = status;
+
+            // If the Validated annotation is on a method, then validate the response with
+            // the specified constraint group.
+            this.returnValueGroups = method.isAnnotationPresent(Validated.class)
+                    ? method.getAnnotation(Validated.class).value()
+                    : new Class<?>[]{Default.class};
+        }
+
+        Class<?>[] getParameterGroups() {
+            if (parameterGroupsError != null) {
+                throw new WebApplicationException(parameterGroupsError, parameterGroupsStatus);
+            }
+            return parameterGroups;
+        }
+    }
+
     /**
      * If the request entity is annotated with {@link Validated} then run
      * validations in the specified constraint group else validate with the
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.monkey.setup.Environment;
+import io.monkey.undertow.accesslog.AccessLogRingBuffer;
+import io.monkey.undertow.accesslog.AsyncAccessLogHandler;
+import io.monkey.undertow.accesslog.AsyncAccessLogWriter;
+import io.monkey.util.Duration;
+import io.monkey.validation.MinDuration;
+import io.undertow.server.HttpHandler;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures an asynchronous access log: request threads only copy a fixed-size record into a
+ * ring buffer and a background thread formats and writes the lines, so access logging stays off
+ * the latency path. Replaces the {@code accessLog} pattern option when present.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr><td>Name</td><td>Default</td><td>Description</td></tr>
+ *     <tr><td>format</td><td>combined</td><td>{@code common} or {@code combined} log format.</td></tr>
+ *     <tr><td>logDirectory</td><td>logs</td><td>The directory of the log files.</td></tr>
+ *     <tr><td>logName</td><td>access</td><td>The log file name, without the {@code .log} suffix.</td></tr>
+ *     <tr><td>ringBufferSize</td><td>8192</td><td>How many records may wait for the writer before
+ *         new ones are dropped.</td></tr>
+ *     <tr><td>flushInterval</td><td>100 milliseconds</td><td>The maximum delay of a line on an idle
+ *         server.</td></tr>
+ * </table>
+ */
+public class AccessLogFactory {
+
+    public enum Format {
+        COMMON, COMBINED
+    }
+
+    @NotNull
+    @JsonProperty
+    private Format format = Format.COMBINED;
+
+    @NotEmpty
+    @JsonProperty
+    private String logDirectory = "logs";
+
+    @NotEmpty
+    @JsonProperty
+    private String logName = "access";
+
+    @Min(1)
+    @JsonProperty
+    private int ringBufferSize = 8192;
+
+    @NotNull
+    @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+    @JsonProperty
+    private Duration flushInterval = Duration.milliseconds(100);
+
+    public HttpHandler build(Environment environment, HttpHandler next) {
+        final AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(ringBufferSize, format == Format.COMBINED);
+        environment.lifecycle().manage(new AsyncAccessLogWriter(ringBuffer, Paths.get(logDirectory), logName,
+            flushInterval, environment.metrics()));
+        return new AsyncAccessLogHandler(ringBuffer, environment.metrics(), next);
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public String getLogDirectory() {
+        return logDirectory;
+    }
+
+    public void setLogDirectory(String logDirectory) {
+        this.logDirectory = logDirectory;
+    }
+
+    public String getLogName() {
+        return logName;
+    }
+
+    public void setLogName(String logName) {
+        this.logName = logName;
+    }
+
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    public void setRingBufferSize(int ringBufferSize) {
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *
+ *  *  Copyright 2018-2023 Monkey, Inc.
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.monkey.undertow;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.monkey.undertow.handler.AdaptiveLimitHandler;
+import io.monkey.util.Duration;
+import io.monkey.validation.MinDuration;
+import io.monkey.validation.ValidationMethod;
+import io.undertow.server.HttpHandler;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures an {@link AdaptiveLimitHandler}, a concurrency limit which adjusts itself from the
+ * observed latency and replaces the static {@code maxConcurrentRequests}/{@code maxRequestsQueue}.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr><td>Name</td><td>Default</td><td>Description</td></tr>
+ *     <tr><td>initialLimit</td><td>20</td><td>The concurrency limit to start with.</td></tr>
+ *     <tr><td>minLimit</td><td>1</td><td>The lower bound of the limit.</td></tr>
+ *     <tr><td>maxLimit</td><td>1000</td><td>The upper bound of the limit.</td></tr>
+ *     <tr><td>smoothing</td><td>0.2</td><td>Weight of each newly computed limit.</td></tr>
+ *     <tr><td>rttTolerance</td><td>1.5</td><td>How much latency may grow over its baseline
+ *         before the limit shrinks.</td></tr>
+ *     <tr><td>sampleWindow</td><td>100 milliseconds</td><td>Minimum duration between two limit
+ *         updates.</td></tr>
+ *     <tr><td>minWindowSamples</td><td>10</td><td>Minimum number of requests between two limit
+ *         updates.</td></tr>
+ *     <tr><td>maxSampleRtt</td><td>10 seconds</td><td>The latency sampled for slower requests,
+ *         so that long-lived ones do not drag the limit down.</td></tr>
+ *     <tr><td>retryAfter</td><td>1 second</td><td>The {@code Retry-After} of rejected requests.</td></tr>
+ * </table>
+ */
+public class AdaptiveLimitFactory {
+
+    @Min(1)
+    @JsonProperty
+    private int initialLimit = 20;
+
+    @Min(1)
+    @JsonProperty
+    private int minLimit = 1;
+
+    @Min(1)
+    @JsonProperty
+    private int maxLimit = 1000;
+
+    @DecimalMin(value = "0.0", inclusive = false)
+    @DecimalMax("1.0")
+    @JsonProperty
+    private double smoothing = 0.2;
+
+    @DecimalMin("1.0")
+    @JsonProperty
+    private double rttTolerance = 1.5;
+
+    @NotNull
+    @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+    @JsonProperty
+    private Duration sampleWindow = Duration.milliseconds(100);
+
+    @Min(1)
+    @JsonProperty
+    private int minWindowSamples = 10;
+
+    @NotNull
+    @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+    @JsonProperty
+    private Duration maxSampleRtt = Duration.seconds(10);
+
+    @NotNull
+    @JsonProperty
+    private Duration retryAfter = Duration.seconds(1);
+
+    public AdaptiveLimitHandler build(MetricRegistry metrics, HttpHandler next) {
+        return new AdaptiveLimitHandler(initialLimit, minLimit, maxLimit, smoothing, rttTolerance,
+            sampleWindow, minWindowSamples, maxSampleRtt, retryAfter, metrics, next);
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "initialLimit must be between minLimit and maxLimit")
+    public boolean isLimitRangeValid() {
+        return minLimit <= initialLimit && initialLimit <= maxLimit;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    public void setRttTolerance(double rttTolerance) {
+        this.rttTolerance = rttTolerance;
+    }
+
+    public Duration getSampleWindow() {
+        return sampleWindow;
+    }
+
+    public void setSampleWindow(Duration sampleWindow) {
+        this.sampleWindow = sampleWindow;
+    }
+
+    public int getMinWindowSamples() {
+        return minWindowSamples;
+    }
+
+    public void setMinWindowSamples(int minWindowSamples) {
+        this.minWindowSamples = minWindowSamples;
+    }
+
+    public Duration getMaxSampleRtt() {
+        return maxSampleRtt;
+    }
+
+    public void setMaxSampleRtt(Duration maxSampleRtt) {
+        this.maxSampleRtt = maxSampleRtt;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.monkey.setup.Environment;
+import io.monkey.undertow.handler.AdminTrafficHandler;
+import io.monkey.validation.PortRange;
+import io.undertow.Undertow;
+import io.undertow.server.handlers.PathHandler;
+
+import javax.validation.constraints.Min;
+import java.util.Collection;
+
+/**
+ * A connector dedicated to the {@code __admin} endpoints, with its own I/O thread and worker pool,
+ * so metrics and health checks stay reachable while the application connector is saturated.
+ * <p>
+ * The connector serves the bare path handler: admin requests skip the limiters and the rest of
+ * the application handler chain, and the application listeners refuse them.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr><td>Name</td><td>Default</td><td>Description</td></tr>
+ *     <tr><td>host</td><td>the server host</td><td>The address to bind to.</td></tr>
+ *     <tr><td>port</td><td>8081</td><td>The port to bind to.</td></tr>
+ *     <tr><td>ioThreads</td><td>1</td><td>The number of I/O threads.</td></tr>
+ *     <tr><td>workerThreads</td><td>4</td><td>The number of worker threads.</td></tr>
+ * </table>
+ */
+public class AdminConnectorFactory {
+
+    @JsonProperty
+    private String host;
+
+    @PortRange
+    @JsonProperty
+    private int port = 8081;
+
+    @Min(1)
+    @JsonProperty
+    private int ioThreads = 1;
+
+    @Min(1)
+    @JsonProperty
+    private int workerThreads = 4;
+
+    public Undertow build(Environment environment, String defaultHost, Collection<String> adminContextPaths) {
+        PathHandler pathHandler = environment.getInjector().getInstance(PathHandler.class);
+        return Undertow.builder()
+            .addHttpListener(port, host == null ? defaultHost : host, AdminTrafficHandler.adminOnly(adminContextPaths, pathHandler))
+            .setIoThreads(ioThreads)
+            .setWorkerThreads(workerThreads)
+            .build();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+}
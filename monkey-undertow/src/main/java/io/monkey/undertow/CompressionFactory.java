@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableSet;
+import io.monkey.undertow.handler.CompressiblePredicate;
+import io.monkey.util.Size;
+import io.undertow.conduits.DeflatingStreamSinkConduit;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.encoding.ContentEncodingRepository;
+import io.undertow.server.handlers.encoding.DeflateEncodingProvider;
+import io.undertow.server.handlers.encoding.EncodingHandler;
+import io.undertow.server.handlers.encoding.GzipEncodingProvider;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.Set;
+
+/**
+ * Configures an {@link EncodingHandler} which compresses responses of every handler, JAX-RS or not,
+ * negotiating {@code gzip} or {@code deflate} from the {@code Accept-Encoding} header.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr><td>Name</td><td>Default</td><td>Description</td></tr>
+ *     <tr><td>minSize</td><td>1 kilobyte</td><td>Responses with a smaller {@code Content-Length}
+ *         are sent as is.</td></tr>
+ *     <tr><td>mimeTypes</td><td>text/*, application/json, ...</td><td>The compressed content types,
+ *         {@code type/*} matches any subtype.</td></tr>
+ *     <tr><td>level</td><td>6</td><td>The deflate level, from 1 (fastest) to 9 (smallest).</td></tr>
+ *     <tr><td>deflaterPoolSize</td><td>64</td><td>How many {@code Deflater} instances are kept for
+ *         reuse, per encoding.</td></tr>
+ *     <tr><td>deflate</td><td>true</td><td>Whether {@code deflate} is offered next to {@code gzip}.</td></tr>
+ * </table>
+ */
+public class CompressionFactory {
+
+    @NotNull
+    @JsonProperty
+    private Size minSize = Size.kilobytes(1);
+
+    @NotEmpty
+    @JsonProperty
+    private Set<String> mimeTypes = ImmutableSet.of(
+        "text/*",
+        "application/json",
+        "application/javascript",
+        "application/xml",
+        "application/x-ndjson",
+        "image/svg+xml");
+
+    @Min(1)
+    @Max(9)
+    @JsonProperty
+    private int level = 6;
+
+    @Min(1)
+    @JsonProperty
+    private int deflaterPoolSize = 64;
+
+    @JsonProperty
+    private boolean deflate = true;
+
+    public HttpHandler build(HttpHandler next) {
+        final CompressiblePredicate compressible = new CompressiblePredicate(minSize.toBytes(), mimeTypes);
+        final ContentEncodingRepository repository = new ContentEncodingRepository()
+            .addEncodingHandler("gzip", new GzipEncodingProvider(
+                DeflatingStreamSinkConduit.simpleDeflaterPool(deflaterPoolSize, level)), 100, compressible);
+        if (deflate) {
+            repository.addEncodingHandler("deflate", new DeflateEncodingProvider(
+                DeflatingStreamSinkConduit.simpleDeflaterPool(deflaterPoolSize, level)), 50, compressible);
+        }
+        return new EncodingHandler(next, repository);
+    }
+
+    public Size getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(Size minSize) {
+        this.minSize = minSize;
+    }
+
+    public Set<String> getMimeTypes() {
+        return mimeTypes;
+    }
+
+    public void setMimeTypes(Set<String> mimeTypes) {
+        this.mimeTypes = mimeTypes;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public int getDeflaterPoolSize() {
+        return deflaterPoolSize;
+    }
+
+    public void setDeflaterPoolSize(int deflaterPoolSize) {
+        this.deflaterPoolSize = deflaterPoolSize;
+    }
+
+    public boolean isDeflate() {
+        return deflate;
+    }
+
+    public void setDeflate(boolean deflate) {
+        this.deflate = deflate;
+    }
+}
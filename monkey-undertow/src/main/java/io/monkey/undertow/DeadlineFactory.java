@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.monkey.undertow.handler.DeadlineHandler;
+import io.monkey.util.Duration;
+import io.undertow.server.HttpHandler;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Configures a {@link DeadlineHandler}, the time budget of each request.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr><td>Name</td><td>Default</td><td>Description</td></tr>
+ *     <tr><td>header</td><td>X-Request-Deadline</td><td>The header carrying the caller's remaining
+ *         budget in milliseconds.</td></tr>
+ *     <tr><td>defaultBudget</td><td></td><td>The budget of requests matching no route, none when
+ *         absent.</td></tr>
+ *     <tr><td>routes</td><td></td><td>Budgets by path prefix, e.g. {@code /api/reports: 30 seconds}.</td></tr>
+ * </table>
+ */
+public class DeadlineFactory {
+
+    @NotEmpty
+    @JsonProperty
+    private String header = "X-Request-Deadline";
+
+    @JsonProperty
+    private Duration defaultBudget;
+
+    @NotNull
+    @JsonProperty
+    private Map<String, Duration> routes = Collections.emptyMap();
+
+    public HttpHandler build(HttpHandler next) {
+        return new DeadlineHandler(header, defaultBudget, routes, next);
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public Duration getDefaultBudget() {
+        return defaultBudget;
+    }
+
+    public void setDefaultBudget(Duration defaultBudget) {
+        this.defaultBudget = defaultBudget;
+    }
+
+    public Map<String, Duration> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Duration> routes) {
+        this.routes = routes;
+    }
+}
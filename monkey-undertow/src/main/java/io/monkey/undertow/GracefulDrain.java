@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow;
+
+import com.codahale.metrics.health.HealthCheck;
+import io.monkey.undertow.handler.ActiveRequestsHandler;
+import io.monkey.util.Duration;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.GracefulShutdownHandler;
+
+/**
+ * Drains the application listeners on shutdown. The health check fails first, and the pre-stop
+ * delay gives load balancers the time to observe it and move away; then new requests are refused
+ * with {@code 503} by a {@link GracefulShutdownHandler} and the in-flight ones get up to the grace
+ * period to complete.
+ */
+public class GracefulDrain extends HealthCheck {
+
+    private final ActiveRequestsHandler active;
+    private final GracefulShutdownHandler handler;
+    private final Duration gracePeriod;
+    private final Duration preStopDelay;
+    private volatile boolean draining;
+
+    public GracefulDrain(Duration gracePeriod, Duration preStopDelay, HttpHandler next) {
+        this.active = new ActiveRequestsHandler(next);
+        this.handler = new GracefulShutdownHandler(active);
+        this.gracePeriod = gracePeriod;
+        this.preStopDelay = preStopDelay;
+    }
+
+    public HttpHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Fails the health check, then waits for the pre-stop delay while requests are still served.
+     */
+    public void announce() throws InterruptedException {
+        draining = true;
+        if (preStopDelay.toMilliseconds() > 0) {
+            Thread.sleep(preStopDelay.toMilliseconds());
+        }
+    }
+
+    /**
+     * Refuses new requests and waits for the in-flight ones, at most for the grace period.
+     *
+     * @param refused run once new requests are refused, before waiting
+     * @return the number of requests still in flight at the deadline, i.e. the ones cut off
+     */
+    public long drain(Runnable refused) throws InterruptedException {
+        draining = true;
+        handler.shutdown();
+        refused.run();
+        if (handler.awaitShutdown(gracePeriod.toMilliseconds())) {
+            return 0;
+        }
+        return active.getCount();
+    }
+
+    public Duration getGracePeriod() {
+        return gracePeriod;
+    }
+
+    public Duration getPreStopDelay() {
+        return preStopDelay;
+    }
+
+    @Override
+    protected Result check() {
+        return draining ? Result.unhealthy("draining for shutdown") : Result.healthy();
+    }
+}
@@ -18,32 +18,71 @@
 
 package io.monkey.undertow;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import io.monkey.server.Server;
 import io.monkey.setup.Environment;
 import io.undertow.Undertow;
+import io.undertow.server.ConnectorStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetSocketAddress;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+
+import static com.codahale.metrics.MetricRegistry.name;
 
 public class HttpServer extends Server {
 
     private static Logger logger = LoggerFactory.getLogger(HttpServer.class);
     private final String version;
+    private final MetricRegistry metrics;
     private boolean started;
     private Undertow undertow;
+    private Undertow admin;
+    private GracefulDrain drain;
+    private Set<Integer> adminOnlyListeners;
 
     public HttpServer(Environment environment, Undertow undertow) {
+        this(environment, undertow, null, null, Collections.emptySet());
+    }
+
+    /**
+     * @param admin              the admin connector, or {@code null}. It starts before and stops after
+     *                           the application connectors, so the admin endpoints outlive them.
+     * @param drain              the drain of the application connectors on shutdown, or {@code null}
+     * @param adminOnlyListeners the indexes of the admin only listeners of {@code undertow}, which
+     *                           keep accepting while the others drain
+     */
+    public HttpServer(Environment environment, Undertow undertow, Undertow admin, GracefulDrain drain,
+                      Set<Integer> adminOnlyListeners) {
         super(environment);
         this.undertow = undertow;
+        this.admin = admin;
+        this.drain = drain;
+        this.adminOnlyListeners = adminOnlyListeners;
+        this.metrics = environment.metrics();
         this.version = Undertow.class.getPackage().getImplementationVersion();
     }
 
     @Override
     protected void boot() {
-        undertow.start();
+        if (admin != null) {
+            admin.start();
+        }
+        try {
+            undertow.start();
+        } catch (RuntimeException e) {
+            // the admin connector would otherwise keep its listener and threads
+            if (admin != null) {
+                admin.stop();
+            }
+            throw e;
+        }
         started = true;
 
         List<Undertow.ListenerInfo> listeners = undertow.getListenerInfo();
@@ -52,16 +91,90 @@ public class HttpServer extends Server {
 
         for (Undertow.ListenerInfo info : listeners) {
             strings.add(info.getProtcol() + "://" + info.getAddress());
+            registerGauges(info);
+        }
+
+        if (admin != null) {
+            for (Undertow.ListenerInfo info : admin.getListenerInfo()) {
+                strings.add("admin " + info.getProtcol() + "://" + info.getAddress());
+            }
         }
 
         logger.info("Started HTTP Server({}) With Connectors:", version);
         logger.info("   {}", Joiner.on("\n").join(strings));
     }
 
+    /**
+     * Each HTTP/2 stream is an exchange of its own, so {@code active-requests} counts the open
+     * streams of the listener and {@code active-connections} its multiplexed connections. There
+     * are no statistics unless {@code listenerStatistics} is enabled.
+     */
+    private void registerGauges(Undertow.ListenerInfo info) {
+        final ConnectorStatistics statistics = info.getConnectorStatistics();
+        if (statistics == null) {
+            return;
+        }
+
+        String listener = info.getProtcol();
+        if (info.getAddress() instanceof InetSocketAddress) {
+            listener += "-" + ((InetSocketAddress) info.getAddress()).getPort();
+        }
+        register(name(HttpServer.class, listener, "active-connections"),
+            (Gauge<Long>) statistics::getActiveConnections);
+        register(name(HttpServer.class, listener, "active-requests"),
+            (Gauge<Long>) statistics::getActiveRequests);
+        register(name(HttpServer.class, listener, "requests"),
+            (Gauge<Long>) statistics::getRequestCount);
+    }
+
+    /**
+     * Replaces the gauge of a previous boot, which reads the statistics of stopped listeners.
+     */
+    private void register(String name, Gauge<Long> gauge) {
+        metrics.remove(name);
+        metrics.register(name, gauge);
+    }
+
+    /**
+     * Fails the health check for the pre-stop delay, then stops accepting connections on the
+     * application listeners and waits for the in-flight requests before the managed objects they may
+     * still use are stopped.
+     */
+    @Override
+    protected void drain() throws Exception {
+        if (undertow == null || !started) {
+            return;
+        }
+        if (drain == null) {
+            fireServerDraining();
+            return;
+        }
+
+        logger.info("Draining HTTP Server({}) in {}", version, drain.getPreStopDelay());
+        drain.announce();
+
+        List<Undertow.ListenerInfo> listeners = undertow.getListenerInfo();
+        for (int i = 0; i < listeners.size(); i++) {
+            if (!adminOnlyListeners.contains(i)) {
+                listeners.get(i).suspend();
+            }
+        }
+        logger.info("Draining HTTP Server({}) for up to {}", version, drain.getGracePeriod());
+
+        long cutOff = drain.drain(this::fireServerDraining);
+        if (cutOff > 0) {
+            metrics.counter(name(HttpServer.class, "cut-off-requests")).inc(cutOff);
+            logger.warn("{} requests still in flight after {}, cutting them off", cutOff, drain.getGracePeriod());
+        }
+    }
+
     @Override
     protected void shutdown() {
         if (undertow != null && started) {
             undertow.stop();
+            if (admin != null) {
+                admin.stop();
+            }
             logger.info("Stopped HTTP Server({})", version);
         }
     }
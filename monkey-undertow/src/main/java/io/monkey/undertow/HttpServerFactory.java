@@ -18,23 +18,41 @@
 
 package io.monkey.undertow;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import io.monkey.server.Server;
 import io.monkey.server.ServerFactory;
 import io.monkey.setup.Environment;
+import io.monkey.undertow.handler.AdminTrafficHandler;
+import io.monkey.undertow.handler.AssetsHandler;
 import io.monkey.undertow.setup.UndertowModule;
 import io.monkey.util.Duration;
 import io.monkey.util.Size;
+import io.monkey.validation.MinDuration;
 import io.monkey.validation.PortRange;
+import io.monkey.validation.ValidationMethod;
 import io.undertow.Undertow;
 import io.undertow.UndertowOptions;
 import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.resource.ClassPathResourceManager;
+import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.ResourceManager;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.xnio.OptionMap;
+import org.xnio.Options;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 @JsonTypeName("http")
 public class HttpServerFactory implements ServerFactory {
@@ -48,12 +66,41 @@ public class HttpServerFactory implements ServerFactory {
     @PortRange
     private int port = 8080;
 
+    @Valid
+    @JsonProperty
+    private List<ListenerFactory> listeners = Collections.emptyList();
+
+    @Valid
+    @JsonProperty
+    private AdminConnectorFactory adminConnector;
+
+    @JsonProperty
+    private boolean balanceAccepts = false;
+
+    @Min(1)
+    @JsonProperty
+    private int acceptors = 1;
+
+    @NotNull
+    @JsonProperty
+    private Duration shutdownGracePeriod = Duration.seconds(0);
+
+    @NotNull
+    @JsonProperty
+    private Duration preStopDelay = Duration.seconds(0);
+
     @JsonProperty
     private int ioThreads = Math.max(Runtime.getRuntime().availableProcessors(), 2);
 
     @JsonProperty
     private int workerThreads = ioThreads * 8;
 
+    @JsonProperty
+    private DispatchMode dispatchMode = DispatchMode.WORKER;
+
+    @JsonProperty
+    private WorkerExecutor workerExecutor = WorkerExecutor.POOL;
+
     @JsonProperty
     private Size bufferSize = Size.kilobytes(16);
     @JsonProperty
@@ -65,6 +112,22 @@ public class HttpServerFactory implements ServerFactory {
     @JsonProperty
     private boolean enableHttp2Push = false;
 
+    @JsonProperty
+    private boolean enableH2c = true;
+
+    @Min(1)
+    @JsonProperty
+    private Integer http2MaxConcurrentStreams;
+
+    @JsonProperty
+    private Size http2InitialWindowSize;
+
+    @JsonProperty
+    private Size http2MaxFrameSize;
+
+    @JsonProperty
+    private Size http2HeaderTableSize;
+
     @JsonProperty
     private Size maxHeaderSize = Size.megabytes(1);
 
@@ -77,6 +140,10 @@ public class HttpServerFactory implements ServerFactory {
     @JsonProperty
     private String accessLog;
 
+    @Valid
+    @JsonProperty
+    private AccessLogFactory asyncAccessLog;
+
     @JsonProperty
     private boolean dumpRequest = false;
 
@@ -85,37 +152,146 @@ public class HttpServerFactory implements ServerFactory {
     @JsonProperty
     private int maxRequestsQueue = 1000;
 
+    @Valid
+    @JsonProperty
+    private AdaptiveLimitFactory adaptiveLimit;
+
     @JsonProperty
     private Duration slowThreshold;
 
+    @JsonProperty
+    private boolean instrumented = false;
+
+    @JsonProperty
+    private int maxInstrumentedRoutes = 200;
+
+    @JsonProperty
+    private boolean listenerStatistics = false;
+
+    @Valid
+    @JsonProperty
+    private CompressionFactory compression;
+
+    @Valid
+    @JsonProperty
+    private DeadlineFactory deadline;
+
+    @Valid
+    @JsonProperty
+    private ResponseCacheFactory responseCache;
+
     @Valid
     private AssetsConfig assetsConfig;
 
+    // the context paths of the deployments serving __admin endpoints, registered as they are mounted
+    @JsonIgnore
+    private final Set<String> adminContextPaths = new CopyOnWriteArraySet<>(Collections.singleton("/"));
+
     @Override
     public Server build(Environment environment) {
-        Undertow.ListenerBuilder builder = getListener(environment);
-        builder.setType(Undertow.ListenerType.HTTP);
-        Undertow undertow = Undertow.builder()
-            .addListener(builder)
+        HttpHandler rootHandler = environment.getInjector().getInstance(HttpHandler.class);
+        // admin only listeners are not drained, they keep serving the health checks until the stop
+        final HttpHandler adminHandler = rootHandler;
+        GracefulDrain drain = null;
+        if (shutdownGracePeriod.toMilliseconds() > 0) {
+            drain = new GracefulDrain(shutdownGracePeriod, preStopDelay, rootHandler);
+            environment.healthChecks().register("http-server", drain);
+            rootHandler = drain.getHandler();
+        }
+        HttpHandler applicationHandler = adminConnector != null || listeners.stream().anyMatch(ListenerFactory::isAdminOnly)
+            ? AdminTrafficHandler.applicationOnly(adminContextPaths, rootHandler) : rootHandler;
+
+        Undertow.Builder undertow = Undertow.builder()
+            .addListener(acceptOptions(getListener(environment, applicationHandler)));
+        // indexes in the listener infos, which follow the order the listeners are added in
+        Set<Integer> adminOnlyListeners = new HashSet<>();
+        for (int i = 0; i < listeners.size(); i++) {
+            ListenerFactory listener = listeners.get(i);
+            HttpHandler handler = applicationHandler;
+            if (listener.isAdminOnly()) {
+                handler = adminHandler;
+                adminOnlyListeners.add(i + 1);
+            }
+            undertow.addListener(acceptOptions(listener.build(environment, host, handler, adminContextPaths)));
+        }
+
+        undertow
             .setIoThreads(ioThreads)
             .setWorkerThreads(workerThreads)
             .setDirectBuffers(directBuffers)
             .setBufferSize((int) bufferSize.toBytes() - 20)
-            .setServerOption(UndertowOptions.ENABLE_HTTP2, enableHttp2)
             .setServerOption(UndertowOptions.MAX_HEADER_SIZE, (int) maxHeaderSize.toBytes())
             .setServerOption(UndertowOptions.MAX_ENTITY_SIZE, maxEntitySize.toBytes())
             .setServerOption(UndertowOptions.MULTIPART_MAX_ENTITY_SIZE, maxMultipartEntitySize.toBytes())
-            .setServerOption(UndertowOptions.HTTP2_SETTINGS_ENABLE_PUSH, enableHttp2Push)
-            .build();
+            .setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME,
+                instrumented || adaptiveLimit != null || deadline != null)
+            .setServerOption(UndertowOptions.ENABLE_STATISTICS, listenerStatistics);
+        configureHttp2(undertow);
+
+        Undertow admin = adminConnector == null ? null : adminConnector.build(environment, host, adminContextPaths);
+        return new HttpServer(environment, undertow.build(), admin, drain, adminOnlyListeners);
+    }
+
+    /**
+     * On plain listeners HTTP/2 is only reachable as h2c, either upgraded from HTTP/1.1 or with
+     * prior knowledge, so {@code enableH2c} gates it there.
+     */
+    protected void configureHttp2(Undertow.Builder undertow) {
+        boolean secure = isSecure() || listeners.stream().anyMatch(l -> l.getType() == ListenerFactory.Type.HTTPS);
+        boolean http2 = enableHttp2 && (secure || enableH2c);
+        undertow.setServerOption(UndertowOptions.ENABLE_HTTP2, http2);
+        if (!http2) {
+            return;
+        }
+
+        undertow.setServerOption(UndertowOptions.HTTP2_SETTINGS_ENABLE_PUSH, enableHttp2Push);
+        if (http2MaxConcurrentStreams != null) {
+            undertow.setServerOption(UndertowOptions.HTTP2_SETTINGS_MAX_CONCURRENT_STREAMS, http2MaxConcurrentStreams);
+        }
+        if (http2InitialWindowSize != null) {
+            undertow.setServerOption(UndertowOptions.HTTP2_SETTINGS_INITIAL_WINDOW_SIZE,
+                (int) http2InitialWindowSize.toBytes());
+        }
+        if (http2MaxFrameSize != null) {
+            undertow.setServerOption(UndertowOptions.HTTP2_SETTINGS_MAX_FRAME_SIZE, (int) http2MaxFrameSize.toBytes());
+        }
+        if (http2HeaderTableSize != null) {
+            undertow.setServerOption(UndertowOptions.HTTP2_SETTINGS_HEADER_TABLE_SIZE,
+                (int) http2HeaderTableSize.toBytes());
+        }
+    }
 
-        return new HttpServer(environment, undertow);
+    protected boolean isSecure() {
+        return false;
     }
 
-    protected Undertow.ListenerBuilder getListener(Environment environment) {
+    protected Undertow.ListenerBuilder getListener(Environment environment, HttpHandler rootHandler) {
         return new Undertow.ListenerBuilder()
+            .setType(Undertow.ListenerType.HTTP)
             .setHost(host)
             .setPort(port)
-            .setRootHandler(environment.getInjector().getInstance(HttpHandler.class));
+            .setRootHandler(rootHandler);
+    }
+
+    /**
+     * XNIO registers the single listening socket on every I/O thread; with {@code balanceAccepts}
+     * and more than one {@code acceptor}, its balancing tokens limit how many of those threads
+     * accept connections at once, the others keep serving the connections they already have. This
+     * is not {@code SO_REUSEPORT}, the kernel does not shard the connections between sockets.
+     */
+    private Undertow.ListenerBuilder acceptOptions(Undertow.ListenerBuilder listener) {
+        if (balanceAccepts && acceptors > 1) {
+            listener.setOverrideSocketOptions(OptionMap.builder()
+                .set(Options.BALANCING_TOKENS, acceptors)
+                .getMap());
+        }
+        return listener;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "acceptors must be lower than ioThreads")
+    public boolean isAcceptorsValid() {
+        return !balanceAccepts || acceptors == 1 || acceptors < ioThreads;
     }
 
     @Override
@@ -139,6 +315,58 @@ public class HttpServerFactory implements ServerFactory {
         this.port = port;
     }
 
+    public List<ListenerFactory> getListeners() {
+        return listeners;
+    }
+
+    public void setListeners(List<ListenerFactory> listeners) {
+        this.listeners = listeners;
+    }
+
+    public Duration getShutdownGracePeriod() {
+        return shutdownGracePeriod;
+    }
+
+    public void setShutdownGracePeriod(Duration shutdownGracePeriod) {
+        this.shutdownGracePeriod = shutdownGracePeriod;
+    }
+
+    public Duration getPreStopDelay() {
+        return preStopDelay;
+    }
+
+    public void setPreStopDelay(Duration preStopDelay) {
+        this.preStopDelay = preStopDelay;
+    }
+
+    public AdminConnectorFactory getAdminConnector() {
+        return adminConnector;
+    }
+
+    public void setAdminConnector(AdminConnectorFactory adminConnector) {
+        this.adminConnector = adminConnector;
+    }
+
+    /**
+     * Whether only {@code acceptors} I/O threads at a time accept connections, through XNIO's
+     * balancing tokens on the one listening socket; this is not {@code SO_REUSEPORT}.
+     */
+    public boolean isBalanceAccepts() {
+        return balanceAccepts;
+    }
+
+    public void setBalanceAccepts(boolean balanceAccepts) {
+        this.balanceAccepts = balanceAccepts;
+    }
+
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    public void setAcceptors(int acceptors) {
+        this.acceptors = acceptors;
+    }
+
     public int getIoThreads() {
         return ioThreads;
     }
@@ -155,6 +383,54 @@ public class HttpServerFactory implements ServerFactory {
         this.workerThreads = workerThreads;
     }
 
+    public DispatchMode getDispatchMode() {
+        return dispatchMode;
+    }
+
+    public void setDispatchMode(DispatchMode dispatchMode) {
+        this.dispatchMode = dispatchMode;
+    }
+
+    public WorkerExecutor getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    public void setWorkerExecutor(WorkerExecutor workerExecutor) {
+        this.workerExecutor = workerExecutor;
+    }
+
+    public AccessLogFactory getAsyncAccessLog() {
+        return asyncAccessLog;
+    }
+
+    public void setAsyncAccessLog(AccessLogFactory asyncAccessLog) {
+        this.asyncAccessLog = asyncAccessLog;
+    }
+
+    public DeadlineFactory getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(DeadlineFactory deadline) {
+        this.deadline = deadline;
+    }
+
+    public ResponseCacheFactory getResponseCache() {
+        return responseCache;
+    }
+
+    public void setResponseCache(ResponseCacheFactory responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public CompressionFactory getCompression() {
+        return compression;
+    }
+
+    public void setCompression(CompressionFactory compression) {
+        this.compression = compression;
+    }
+
     public Size getBufferSize() {
         return bufferSize;
     }
@@ -187,6 +463,46 @@ public class HttpServerFactory implements ServerFactory {
         this.maxHeaderSize = maxHeaderSize;
     }
 
+    public boolean isEnableH2c() {
+        return enableH2c;
+    }
+
+    public void setEnableH2c(boolean enableH2c) {
+        this.enableH2c = enableH2c;
+    }
+
+    public Integer getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    public void setHttp2MaxConcurrentStreams(Integer http2MaxConcurrentStreams) {
+        this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+    }
+
+    public Size getHttp2InitialWindowSize() {
+        return http2InitialWindowSize;
+    }
+
+    public void setHttp2InitialWindowSize(Size http2InitialWindowSize) {
+        this.http2InitialWindowSize = http2InitialWindowSize;
+    }
+
+    public Size getHttp2MaxFrameSize() {
+        return http2MaxFrameSize;
+    }
+
+    public void setHttp2MaxFrameSize(Size http2MaxFrameSize) {
+        this.http2MaxFrameSize = http2MaxFrameSize;
+    }
+
+    public Size getHttp2HeaderTableSize() {
+        return http2HeaderTableSize;
+    }
+
+    public void setHttp2HeaderTableSize(Size http2HeaderTableSize) {
+        this.http2HeaderTableSize = http2HeaderTableSize;
+    }
+
     public boolean isEnableHttp2Push() {
         return enableHttp2Push;
     }
@@ -243,6 +559,14 @@ public class HttpServerFactory implements ServerFactory {
         this.maxRequestsQueue = maxRequestsQueue;
     }
 
+    public AdaptiveLimitFactory getAdaptiveLimit() {
+        return adaptiveLimit;
+    }
+
+    public void setAdaptiveLimit(AdaptiveLimitFactory adaptiveLimit) {
+        this.adaptiveLimit = adaptiveLimit;
+    }
+
     public Duration getSlowThreshold() {
         return slowThreshold;
     }
@@ -251,6 +575,42 @@ public class HttpServerFactory implements ServerFactory {
         this.slowThreshold = slowThreshold;
     }
 
+    public boolean isInstrumented() {
+        return instrumented;
+    }
+
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+    }
+
+    public int getMaxInstrumentedRoutes() {
+        return maxInstrumentedRoutes;
+    }
+
+    public void setMaxInstrumentedRoutes(int maxInstrumentedRoutes) {
+        this.maxInstrumentedRoutes = maxInstrumentedRoutes;
+    }
+
+    /**
+     * Per listener connection and request counts, exposed as gauges, at the cost of shared counters
+     * updated by every request.
+     */
+    public boolean isListenerStatistics() {
+        return listenerStatistics;
+    }
+
+    public void setListenerStatistics(boolean listenerStatistics) {
+        this.listenerStatistics = listenerStatistics;
+    }
+
+    /**
+     * Registers the context path of a deployment whose {@code __admin} endpoints are only served by
+     * the admin listeners; {@code /} is always registered.
+     */
+    public void addAdminContextPath(String contextPath) {
+        adminContextPaths.add(contextPath);
+    }
+
     @JsonProperty("assets")
     public AssetsConfig getAssetsConfig() {
         return assetsConfig;
@@ -261,7 +621,39 @@ public class HttpServerFactory implements ServerFactory {
         this.assetsConfig = assetsConfig;
     }
 
+    /**
+     * Where the handlers registered on the root {@code PathHandler} run.
+     */
+    public enum DispatchMode {
+        /**
+         * Handlers run where the chain calls them and dispatch to the worker pool themselves.
+         */
+        WORKER,
+        /**
+         * {@link io.monkey.undertow.handler.NonBlocking} handlers run on the I/O thread, all other
+         * handlers are dispatched to the worker pool.
+         */
+        IO
+    }
+
+    /**
+     * The executor which runs dispatched (blocking) handlers.
+     */
+    public enum WorkerExecutor {
+        /**
+         * The XNIO worker pool of {@code workerThreads} platform threads.
+         */
+        POOL,
+        /**
+         * A new virtual thread per dispatched task when the runtime supports them, the worker pool
+         * otherwise.
+         */
+        VIRTUAL
+    }
+
     public static class AssetsConfig {
+        private static final String CLASSPATH_PREFIX = "classpath:";
+
         @NotEmpty
         private String resourcePath;
 
@@ -270,6 +662,17 @@ public class HttpServerFactory implements ServerFactory {
 
         private boolean allowListing = false;
 
+        private Size cacheSize = Size.megabytes(32);
+
+        private Size maxCachedFileSize = Size.megabytes(1);
+
+        @MinDuration(1)
+        private Duration cacheTtl = Duration.minutes(1);
+
+        private Duration cacheTime;
+
+        private boolean precompressed = true;
+
         @JsonProperty
         public String getResourcePath() {
             return resourcePath;
@@ -299,5 +702,70 @@ public class HttpServerFactory implements ServerFactory {
         public void setAllowListing(boolean allowListing) {
             this.allowListing = allowListing;
         }
+
+        @JsonProperty
+        public Size getCacheSize() {
+            return cacheSize;
+        }
+
+        @JsonProperty
+        public void setCacheSize(Size cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        @JsonProperty
+        public Size getMaxCachedFileSize() {
+            return maxCachedFileSize;
+        }
+
+        @JsonProperty
+        public void setMaxCachedFileSize(Size maxCachedFileSize) {
+            this.maxCachedFileSize = maxCachedFileSize;
+        }
+
+        @JsonProperty
+        public Duration getCacheTtl() {
+            return cacheTtl;
+        }
+
+        @JsonProperty
+        public void setCacheTtl(Duration cacheTtl) {
+            this.cacheTtl = cacheTtl;
+        }
+
+        @JsonProperty
+        public Duration getCacheTime() {
+            return cacheTime;
+        }
+
+        @JsonProperty
+        public void setCacheTime(Duration cacheTime) {
+            this.cacheTime = cacheTime;
+        }
+
+        @JsonProperty
+        public boolean isPrecompressed() {
+            return precompressed;
+        }
+
+        @JsonProperty
+        public void setPrecompressed(boolean precompressed) {
+            this.precompressed = precompressed;
+        }
+
+        /**
+         * A {@code classpath:} resource path is served from the class loader, anything else from the file system.
+         */
+        public HttpHandler build() {
+            final ResourceManager resourceManager;
+            if (resourcePath.startsWith(CLASSPATH_PREFIX)) {
+                resourceManager = new ClassPathResourceManager(getClass().getClassLoader(),
+                    resourcePath.substring(CLASSPATH_PREFIX.length()));
+            } else {
+                resourceManager = new PathResourceManager(Paths.get(resourcePath), maxCachedFileSize.toBytes());
+            }
+            return new AssetsHandler(resourceManager, cacheSize.toBytes(), maxCachedFileSize.toBytes(),
+                cacheTtl, cacheTime, precompressed, allowListing);
+        }
     }
 }
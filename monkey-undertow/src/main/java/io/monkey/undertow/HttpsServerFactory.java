@@ -24,6 +24,7 @@ import com.fasterxml.jackson.annotation.JsonTypeName;
 import io.monkey.setup.Environment;
 import io.monkey.ssl.SslContextFactoryFactory;
 import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
 
 @JsonTypeName("https")
 public class HttpsServerFactory extends HttpServerFactory {
@@ -32,7 +33,7 @@ public class HttpsServerFactory extends HttpServerFactory {
     private SslContextFactoryFactory sslContextFactoryFactory = new SslContextFactoryFactory();
 
     @Override
-    protected Undertow.ListenerBuilder getListener(Environment environment) {
+    protected Undertow.ListenerBuilder getListener(Environment environment, HttpHandler rootHandler) {
 
         // workaround for chrome issue w/ JVM and self-signed certs triggering
         // an IOException that can safely be ignored
@@ -40,13 +41,18 @@ public class HttpsServerFactory extends HttpServerFactory {
                 = (ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("io.undertow.request.io");
         root.setLevel(Level.WARN);
 
-        Undertow.ListenerBuilder builder = super.getListener(environment);
+        Undertow.ListenerBuilder builder = super.getListener(environment, rootHandler);
         builder.setType(Undertow.ListenerType.HTTPS);
         builder.setSslContext(sslContextFactoryFactory.build(environment));
 
         return builder;
     }
 
+    @Override
+    protected boolean isSecure() {
+        return true;
+    }
+
     public SslContextFactoryFactory getSslContextFactoryFactory() {
         return sslContextFactoryFactory;
     }
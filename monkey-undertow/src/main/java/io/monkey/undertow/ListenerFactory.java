@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.monkey.setup.Environment;
+import io.monkey.ssl.SslContextFactoryFactory;
+import io.monkey.undertow.handler.AdminTrafficHandler;
+import io.monkey.validation.PortRange;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+
+/**
+ * An additional listener of an {@link HttpServerFactory}.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr><td>Name</td><td>Default</td><td>Description</td></tr>
+ *     <tr><td>type</td><td>http</td><td>{@code http} or {@code https}.</td></tr>
+ *     <tr><td>host</td><td>the server host</td><td>The address to bind to.</td></tr>
+ *     <tr><td>port</td><td>8081</td><td>The port to bind to.</td></tr>
+ *     <tr><td>adminOnly</td><td>false</td><td>Whether the listener only serves {@code __admin} paths,
+ *         which the other listeners then refuse.</td></tr>
+ *     <tr><td>ssl</td><td></td><td>The TLS settings of an {@code https} listener.</td></tr>
+ * </table>
+ */
+public class ListenerFactory {
+
+    public enum Type {
+        HTTP, HTTPS
+    }
+
+    @NotNull
+    @JsonProperty
+    private Type type = Type.HTTP;
+
+    @JsonProperty
+    private String host;
+
+    @PortRange
+    @JsonProperty
+    private int port = 8081;
+
+    @JsonProperty
+    private boolean adminOnly = false;
+
+    @Valid
+    @JsonProperty
+    private SslContextFactoryFactory ssl = new SslContextFactoryFactory();
+
+    public Undertow.ListenerBuilder build(Environment environment, String defaultHost, HttpHandler rootHandler,
+                                          Collection<String> adminContextPaths) {
+        Undertow.ListenerBuilder builder = new Undertow.ListenerBuilder()
+            .setHost(host == null ? defaultHost : host)
+            .setPort(port)
+            .setRootHandler(adminOnly ? AdminTrafficHandler.adminOnly(adminContextPaths, rootHandler) : rootHandler);
+
+        if (type == Type.HTTPS) {
+            builder.setType(Undertow.ListenerType.HTTPS);
+            builder.setSslContext(ssl.build(environment));
+        } else {
+            builder.setType(Undertow.ListenerType.HTTP);
+        }
+        return builder;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public boolean isAdminOnly() {
+        return adminOnly;
+    }
+
+    public void setAdminOnly(boolean adminOnly) {
+        this.adminOnly = adminOnly;
+    }
+
+    public SslContextFactoryFactory getSsl() {
+        return ssl;
+    }
+
+    public void setSsl(SslContextFactoryFactory ssl) {
+        this.ssl = ssl;
+    }
+}
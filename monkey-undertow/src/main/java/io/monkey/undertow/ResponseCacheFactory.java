@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.monkey.undertow.handler.ResponseCacheHandler;
+import io.monkey.util.Size;
+import io.undertow.server.HttpHandler;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configures a {@link ResponseCacheHandler}, which serves responses the application marked
+ * cacheable, e.g. with {@code @CacheControl(maxAge = ...)}, from memory.
+ * <p/>
+ * <b>Configuration Parameters:</b>
+ * <table>
+ *     <tr><td>Name</td><td>Default</td><td>Description</td></tr>
+ *     <tr><td>maxSize</td><td>64 megabytes</td><td>The total size of the cached bodies.</td></tr>
+ *     <tr><td>maxEntrySize</td><td>1 megabyte</td><td>Larger responses are not cached.</td></tr>
+ * </table>
+ */
+public class ResponseCacheFactory {
+
+    @NotNull
+    @JsonProperty
+    private Size maxSize = Size.megabytes(64);
+
+    @NotNull
+    @JsonProperty
+    private Size maxEntrySize = Size.megabytes(1);
+
+    public HttpHandler build(MetricRegistry metrics, HttpHandler next) {
+        return new ResponseCacheHandler(maxSize.toBytes(), (int) maxEntrySize.toBytes(), metrics, next);
+    }
+
+    public Size getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(Size maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Size getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(Size maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+}
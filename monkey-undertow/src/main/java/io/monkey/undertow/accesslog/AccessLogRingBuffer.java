@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.accesslog;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A bounded multi-producer, single-consumer ring of preallocated access log records.
+ * <p>
+ * Request threads claim a slot with a CAS on the tail sequence, copy the few references and
+ * numbers the log line needs into it and publish it; nothing is formatted and nothing blocks. When
+ * the consumer falls behind by the whole capacity the record is dropped instead.
+ */
+public class AccessLogRingBuffer {
+
+    private final Record[] records;
+    private final int mask;
+    private final boolean combined;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity the number of records, rounded up to a power of two
+     * @param combined whether the referer and user agent are recorded
+     */
+    public AccessLogRingBuffer(int capacity, boolean combined) {
+        final int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.records = new Record[size];
+        for (int i = 0; i < size; i++) {
+            records[i] = new Record();
+        }
+        this.mask = size - 1;
+        this.combined = combined;
+    }
+
+    /**
+     * Records a completed exchange.
+     *
+     * @return {@code false} when the ring is full and the record is dropped
+     */
+    public boolean publish(HttpServerExchange exchange) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= records.length) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        final Record record = records[(int) (sequence & mask)];
+        record.timestamp = System.currentTimeMillis();
+        final InetSocketAddress source = exchange.getSourceAddress();
+        record.remoteAddress = source == null ? null : source.getAddress();
+        record.method = exchange.getRequestMethod();
+        record.requestUri = exchange.getRequestURI();
+        record.queryString = exchange.getQueryString();
+        record.protocol = exchange.getProtocol();
+        record.status = exchange.getStatusCode();
+        record.bytesSent = exchange.getResponseBytesSent();
+        if (combined) {
+            record.referer = exchange.getRequestHeaders().getFirst(Headers.REFERER);
+            record.userAgent = exchange.getRequestHeaders().getFirst(Headers.USER_AGENT);
+        }
+        record.sequence = sequence;
+        return true;
+    }
+
+    /**
+     * Hands at most {@code maxRecords} published records to the consumer, in order, and releases
+     * their slots. Must only be called from a single thread.
+     *
+     * @return the number of records consumed
+     */
+    public int drain(Consumer<Record> consumer, int maxRecords) {
+        long sequence = head.get();
+        int drained = 0;
+        while (drained < maxRecords) {
+            final Record record = records[(int) (sequence & mask)];
+            if (record.sequence != sequence) {
+                break;
+            }
+            try {
+                consumer.accept(record);
+            } finally {
+                record.clear();
+                head.lazySet(++sequence);
+            }
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return the number of claimed records not consumed yet
+     */
+    public long size() {
+        return Math.max(0, tail.get() - head.get());
+    }
+
+    public boolean isCombined() {
+        return combined;
+    }
+
+    /**
+     * A slot of the ring, only valid inside {@link #drain}.
+     */
+    public static final class Record {
+        private volatile long sequence = -1;
+
+        long timestamp;
+        InetAddress remoteAddress;
+        HttpString method;
+        String requestUri;
+        String queryString;
+        HttpString protocol;
+        int status;
+        long bytesSent;
+        String referer;
+        String userAgent;
+
+        private void clear() {
+            remoteAddress = null;
+            method = null;
+            requestUri = null;
+            queryString = null;
+            protocol = null;
+            referer = null;
+            userAgent = null;
+        }
+    }
+}
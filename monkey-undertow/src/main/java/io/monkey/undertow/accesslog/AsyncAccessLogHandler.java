@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.accesslog;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Publishes every completed exchange to an {@link AccessLogRingBuffer} drained by an
+ * {@link AsyncAccessLogWriter}. Records which do not fit the ring are counted by the
+ * {@code io.monkey.undertow.accesslog.AsyncAccessLogHandler.dropped} meter.
+ */
+public class AsyncAccessLogHandler implements HttpHandler {
+
+    private final HttpHandler next;
+    private final ExchangeCompletionListener listener;
+
+    public AsyncAccessLogHandler(AccessLogRingBuffer ringBuffer, MetricRegistry metrics, HttpHandler next) {
+        this.next = next;
+        final Meter dropped = metrics.meter(name(AsyncAccessLogHandler.class, "dropped"));
+        this.listener = (exchange, nextListener) -> {
+            try {
+                if (!ringBuffer.publish(exchange)) {
+                    dropped.mark();
+                }
+            } finally {
+                nextListener.proceed();
+            }
+        };
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        exchange.addExchangeCompleteListener(listener);
+        next.handleRequest(exchange);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.accesslog;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import io.monkey.lifecycle.Managed;
+import io.monkey.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Drains an {@link AccessLogRingBuffer} on its own thread, formats the records in the common or
+ * combined log format and appends them to {@code <directory>/<name>.log} in batches. The file is
+ * rolled over to {@code <name>.<yyyy-MM-dd>.log} at midnight.
+ * <p>
+ * Reports the {@code backlog} of records waiting in the ring and the {@code lag} in milliseconds
+ * between the completion of an exchange and the write of its line.
+ */
+public class AsyncAccessLogWriter implements Managed, Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAccessLogWriter.class);
+
+    private static final int MAX_BATCH = 512;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+        DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US);
+    private static final DateTimeFormatter ARCHIVE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private final AccessLogRingBuffer ringBuffer;
+    private final Path directory;
+    private final String logName;
+    private final long idleNanos;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Histogram lag;
+
+    private final StringBuilder line = new StringBuilder(256);
+    private char[] chars = new char[256];
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTimestamp;
+
+    private Writer writer;
+    private LocalDate currentDay;
+    private long nextRollover;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param flushInterval how long the writer sleeps when the ring is empty, i.e. the maximum
+     *                      delay of a line on an idle server
+     */
+    public AsyncAccessLogWriter(AccessLogRingBuffer ringBuffer, Path directory, String logName,
+                                Duration flushInterval, MetricRegistry metrics) {
+        this.ringBuffer = ringBuffer;
+        this.directory = directory;
+        this.logName = logName;
+        this.idleNanos = flushInterval.toNanoseconds();
+        this.lag = metrics.histogram(name(AsyncAccessLogWriter.class, "lag"));
+        metrics.register(name(AsyncAccessLogWriter.class, "backlog"), (Gauge<Long>) ringBuffer::size);
+    }
+
+    @Override
+    public void start() throws Exception {
+        Files.createDirectories(directory);
+        open();
+
+        running = true;
+        thread = new Thread(this, "access-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join();
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                if (ringBuffer.drain(this::append, MAX_BATCH) == 0) {
+                    flush();
+                    LockSupport.parkNanos(this, idleNanos);
+                }
+            }
+            while (ringBuffer.drain(this::append, MAX_BATCH) > 0) {
+                // drain what completed before the stop
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void append(AccessLogRingBuffer.Record record) {
+        final long now = System.currentTimeMillis();
+        lag.update(now - record.timestamp);
+        try {
+            if (record.timestamp >= nextRollover) {
+                rollover();
+            }
+            format(record);
+            line.append('\n');
+            if (chars.length < line.length()) {
+                chars = new char[line.length() * 2];
+            }
+            line.getChars(0, line.length(), chars, 0);
+            writer.write(chars, 0, line.length());
+        } catch (IOException e) {
+            LOGGER.warn("unable to write access log, {}", e.toString());
+        }
+    }
+
+    private void format(AccessLogRingBuffer.Record record) {
+        line.setLength(0);
+        line.append(record.remoteAddress == null ? "-" : record.remoteAddress.getHostAddress())
+            .append(" - - [").append(timestamp(record.timestamp)).append("] \"")
+            .append(record.method).append(' ').append(record.requestUri);
+        if (record.queryString != null && !record.queryString.isEmpty()) {
+            line.append('?').append(record.queryString);
+        }
+        line.append(' ').append(record.protocol).append("\" ").append(record.status).append(' ');
+        if (record.bytesSent > 0) {
+            line.append(record.bytesSent);
+        } else {
+            line.append('-');
+        }
+        if (ringBuffer.isCombined()) {
+            line.append(" \"").append(record.referer == null ? "-" : record.referer)
+                .append("\" \"").append(record.userAgent == null ? "-" : record.userAgent).append('"');
+        }
+    }
+
+    private String timestamp(long millis) {
+        final long second = millis / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTimestamp = TIMESTAMP_FORMAT.format(Instant.ofEpochSecond(second).atZone(zone));
+        }
+        return cachedTimestamp;
+    }
+
+    private Path logFile() {
+        return directory.resolve(logName + ".log");
+    }
+
+    private void open() throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(logFile(),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8), 64 * 1024);
+        currentDay = LocalDate.now(zone);
+        nextRollover = currentDay.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private void rollover() throws IOException {
+        writer.close();
+        try {
+            final Path archive = directory.resolve(logName + "." + ARCHIVE_FORMAT.format(currentDay) + ".log");
+            Files.move(logFile(), archive, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            open();
+        }
+    }
+
+    private void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            LOGGER.warn("unable to flush access log, {}", e.toString());
+        }
+    }
+
+    private void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.warn("unable to close access log, {}", e.toString());
+        }
+    }
+}
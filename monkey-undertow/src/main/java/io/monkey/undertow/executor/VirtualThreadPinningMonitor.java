@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.executor;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.monkey.lifecycle.Managed;
+import io.monkey.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Counts the {@code jdk.VirtualThreadPinned} JFR events, i.e. virtual threads which blocked while
+ * pinned to their carrier thread (inside {@code synchronized} or native frames), as the
+ * {@code io.monkey.undertow.executor.VirtualThreads.pinned} meter.
+ * <p>
+ * The JFR streaming API is looked up reflectively; on runtimes without it the monitor does nothing.
+ */
+public class VirtualThreadPinningMonitor implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final Meter pinned;
+    private final Duration threshold;
+    private AutoCloseable recordingStream;
+
+    public VirtualThreadPinningMonitor(MetricRegistry metrics, Duration threshold) {
+        this.pinned = metrics.meter(name(VirtualThreads.class, "pinned"));
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void start() {
+        try {
+            Class<?> streamClass = Class.forName("jdk.jfr.consumer.RecordingStream");
+            Object stream = streamClass.getConstructor().newInstance();
+
+            Object settings = streamClass.getMethod("enable", String.class).invoke(stream, PINNED_EVENT);
+            Class.forName("jdk.jfr.EventSettings").getMethod("withThreshold", java.time.Duration.class)
+                .invoke(settings, java.time.Duration.ofNanos(threshold.toNanoseconds()));
+
+            Consumer<Object> onPinned = event -> pinned.mark();
+            streamClass.getMethod("onEvent", String.class, Consumer.class).invoke(stream, PINNED_EVENT, onPinned);
+            streamClass.getMethod("startAsync").invoke(stream);
+
+            this.recordingStream = (AutoCloseable) stream;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("unable to monitor virtual thread pinning, {}", e.toString());
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (recordingStream != null) {
+            recordingStream.close();
+            recordingStream = null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the exchanges which have entered the next handler and are not completed yet.
+ * <p>
+ * Wrapping both sides of a {@code RequestLimitingHandler} gives the number of executing requests
+ * (inner) and, by difference with the outer count, the number of queued ones.
+ */
+public class ActiveRequestsHandler implements HttpHandler, ExchangeCompletionListener {
+
+    private final HttpHandler next;
+    private final LongAdder count = new LongAdder();
+
+    public ActiveRequestsHandler(HttpHandler next) {
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        count.increment();
+        exchange.addExchangeCompleteListener(this);
+        next.handleRequest(exchange);
+    }
+
+    @Override
+    public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+        try {
+            count.decrement();
+        } finally {
+            nextListener.proceed();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.monkey.util.Duration;
+import io.monkey.util.GradientLimit;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ResponseCommitListener;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A concurrency limiting handler whose limit follows the observed request latency, as computed by
+ * a {@link GradientLimit}.
+ * <p>
+ * Latencies are aggregated over short sample windows, at the end of each the limit is updated
+ * from the window's average latency: it shrinks when requests queue up somewhere downstream.
+ * <p>
+ * Event streams leave the limit as soon as their response is committed and are not sampled, and
+ * sampled latencies are capped at {@code maxSampleRtt}, so that long-lived exchanges, such as
+ * suspended responses, do not collapse the limit of the regular traffic.
+ * <p>
+ * Requests over the limit are not queued, they are rejected immediately with
+ * {@code 503 Service Unavailable} and a {@code Retry-After} header.
+ * <p>
+ * Latencies are measured from {@link HttpServerExchange#getRequestStartTime()}, so the server has
+ * to be built with {@code UndertowOptions.RECORD_REQUEST_START_TIME}.
+ */
+public class AdaptiveLimitHandler implements HttpHandler, ExchangeCompletionListener, ResponseCommitListener {
+
+    private static final AttachmentKey<Boolean> RELEASED = AttachmentKey.create(Boolean.class);
+    private static final String EVENT_STREAM = "text/event-stream";
+
+    private final HttpHandler next;
+
+    private final long windowNanos;
+    private final int minWindowSamples;
+    private final long maxSampleRttNanos;
+    private final String retryAfter;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private final LongAdder windowRtt = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private final Meter rejected;
+
+    private volatile int limit;
+    private volatile long windowStart = System.nanoTime();
+
+    // guarded by updateLock
+    private final GradientLimit gradient;
+
+    /**
+     * @param initialLimit     the limit to start with
+     * @param minLimit         the lower bound of the limit
+     * @param maxLimit         the upper bound of the limit
+     * @param smoothing        the weight (0..1] of a newly computed limit against the current one
+     * @param rttTolerance     how much the short-term latency may exceed the long-term one before
+     *                         the limit shrinks
+     * @param window           the minimum duration of a sample window
+     * @param minWindowSamples the minimum number of samples of a window
+     * @param maxSampleRtt     the latency sampled for slower requests
+     * @param retryAfter       the {@code Retry-After} value of rejected requests
+     */
+    public AdaptiveLimitHandler(int initialLimit, int minLimit, int maxLimit,
+                                double smoothing, double rttTolerance,
+                                Duration window, int minWindowSamples, Duration maxSampleRtt, Duration retryAfter,
+                                MetricRegistry metrics, HttpHandler next) {
+        this.next = next;
+        this.gradient = new GradientLimit(initialLimit, minLimit, maxLimit, smoothing, rttTolerance);
+        this.limit = initialLimit;
+        this.windowNanos = window.toNanoseconds();
+        this.minWindowSamples = minWindowSamples;
+        this.maxSampleRttNanos = maxSampleRtt.toNanoseconds();
+        this.retryAfter = Long.toString(Math.max(1, retryAfter.toSeconds()));
+
+        final String prefix = name(AdaptiveLimitHandler.class);
+        metrics.register(name(prefix, "limit"), (Gauge<Integer>) this::getLimit);
+        metrics.register(name(prefix, "in-flight"), (Gauge<Integer>) inFlight::get);
+        this.rejected = metrics.meter(name(prefix, "rejected"));
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final int current = inFlight.incrementAndGet();
+        if (current > limit) {
+            inFlight.decrementAndGet();
+            reject(exchange);
+            return;
+        }
+
+        windowMaxInFlight.accumulateAndGet(current, Math::max);
+        exchange.addExchangeCompleteListener(this);
+        exchange.addResponseCommitListener(this);
+        next.handleRequest(exchange);
+    }
+
+    @Override
+    public void beforeCommit(HttpServerExchange exchange) {
+        final String contentType = exchange.getResponseHeaders().getFirst(Headers.CONTENT_TYPE);
+        if (contentType != null && contentType.regionMatches(true, 0, EVENT_STREAM, 0, EVENT_STREAM.length())) {
+            // the stream may stay open for hours, it no longer competes with the regular requests
+            exchange.putAttachment(RELEASED, Boolean.TRUE);
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+        try {
+            if (exchange.getAttachment(RELEASED) != null) {
+                return;
+            }
+            inFlight.decrementAndGet();
+
+            final long startTime = exchange.getRequestStartTime();
+            if (startTime > 0) {
+                final long now = System.nanoTime();
+                sample(Math.min(now - startTime, maxSampleRttNanos), now);
+            }
+        } finally {
+            nextListener.proceed();
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void reject(HttpServerExchange exchange) {
+        rejected.mark();
+        exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+        exchange.getResponseHeaders().put(Headers.RETRY_AFTER, retryAfter);
+        exchange.endExchange();
+    }
+
+    private void sample(long rtt, long now) {
+        windowRtt.add(rtt);
+        windowSamples.increment();
+
+        if (now - windowStart >= windowNanos && updateLock.tryLock()) {
+            try {
+                if (now - windowStart >= windowNanos && windowSamples.sum() >= minWindowSamples) {
+                    updateLimit(now);
+                }
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    private void updateLimit(long now) {
+        final long samples = windowSamples.sumThenReset();
+        final long totalRtt = windowRtt.sumThenReset();
+        final int peakInFlight = windowMaxInFlight.getAndSet(0);
+        windowStart = now;
+
+        if (samples == 0) {
+            return;
+        }
+
+        limit = gradient.update((double) totalRtt / samples, peakInFlight);
+    }
+}
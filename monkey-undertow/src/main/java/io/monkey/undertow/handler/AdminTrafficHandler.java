@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.ResponseCodeHandler;
+
+import java.util.Collection;
+
+/**
+ * Splits admin traffic, i.e. requests below the {@code __admin} segment directly following a
+ * context path, from application traffic: an admin-only listener answers {@code 404} to everything
+ * else, and the application listeners answer {@code 404} to admin requests.
+ */
+public class AdminTrafficHandler implements HttpHandler {
+
+    public static final String ADMIN_SEGMENT = "/__admin";
+
+    private final boolean admin;
+    private final Collection<String> contextPaths;
+    private final HttpHandler next;
+
+    private AdminTrafficHandler(boolean admin, Collection<String> contextPaths, HttpHandler next) {
+        this.admin = admin;
+        this.contextPaths = contextPaths;
+        this.next = next;
+    }
+
+    /**
+     * @param contextPaths the context paths the admin endpoints are mounted below, read on each
+     *                     request so that deployments may still register theirs
+     */
+    public static HttpHandler adminOnly(Collection<String> contextPaths, HttpHandler next) {
+        return new AdminTrafficHandler(true, contextPaths, next);
+    }
+
+    /**
+     * @param contextPaths the context paths the admin endpoints are mounted below, read on each
+     *                     request so that deployments may still register theirs
+     */
+    public static HttpHandler applicationOnly(Collection<String> contextPaths, HttpHandler next) {
+        return new AdminTrafficHandler(false, contextPaths, next);
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (isAdmin(exchange.getRelativePath(), contextPaths) == admin) {
+            next.handleRequest(exchange);
+        } else {
+            ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
+        }
+    }
+
+    static boolean isAdmin(String path, Collection<String> contextPaths) {
+        for (String contextPath : contextPaths) {
+            final int start = contextPath.endsWith("/") ? contextPath.length() - 1 : contextPath.length();
+            if (path.startsWith(contextPath.substring(0, start))
+                && path.startsWith(ADMIN_SEGMENT, start)) {
+                final int end = start + ADMIN_SEGMENT.length();
+                if (end == path.length() || path.charAt(end) == '/') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
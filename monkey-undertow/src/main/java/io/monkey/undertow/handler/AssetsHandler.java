@@ -0,0 +1,400 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Splitter;
+import com.google.common.io.ByteStreams;
+import io.monkey.util.Duration;
+import io.undertow.io.IoCallback;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.resource.Resource;
+import io.undertow.server.handlers.resource.ResourceHandler;
+import io.undertow.server.handlers.resource.ResourceManager;
+import io.undertow.util.CanonicalPathUtils;
+import io.undertow.util.DateUtils;
+import io.undertow.util.ETag;
+import io.undertow.util.ETagUtils;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.MimeMappings;
+import io.undertow.util.StatusCodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves static assets, keeping the hot ones in a size-bounded off-heap cache.
+ * <p>
+ * Cached assets are answered straight from the I/O thread from direct buffers, including the
+ * {@code 304 Not Modified} answers to {@code If-None-Match}/{@code If-Modified-Since}. Misses are
+ * dispatched to a worker, which loads assets up to {@code maxCachedFileSize} into the cache and
+ * streams larger files with {@link Resource#serve}, i.e. {@code FileChannel.transferTo} for files
+ * on disk. Directories, listings, ranges and unknown paths are left to a {@link ResourceHandler}.
+ * <p>
+ * When {@code precompressed} is set, a {@code .br} or {@code .gz} sibling of the requested file is
+ * served instead of the file itself when the client accepts that encoding with a non-zero
+ * {@code q} value. The absence of a sibling is cached too, so that such clients are served the
+ * cached file without looking the sibling up again.
+ */
+@NonBlocking
+public class AssetsHandler implements HttpHandler {
+
+    private static final int IDENTITY = 0;
+    private static final int GZIP = 1;
+    private static final int BROTLI = 2;
+
+    private static final String[] ENCODINGS = {null, "gzip", "br"};
+    private static final String[] EXTENSIONS = {"", ".gz", ".br"};
+
+    private static final Splitter CODING_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final Splitter PARAM_SPLITTER = Splitter.on(';').trimResults().omitEmptyStrings();
+
+    private final ResourceManager resourceManager;
+    private final ResourceHandler resourceHandler;
+    private final boolean precompressed;
+    private final long maxCachedFileSize;
+    private final String cacheControl;
+    private final Cache<String, CachedAsset[]> cache;
+
+    private final HttpHandler missHandler = this::handleMiss;
+
+    /**
+     * @param resourceManager   where the assets are looked up
+     * @param cacheSize         the maximum number of bytes cached, {@code 0} disables the cache
+     * @param maxCachedFileSize the maximum size of a single cached asset
+     * @param cacheTtl          how long an asset is cached before it is looked up again
+     * @param cacheTime         the {@code max-age} sent to clients, {@code null} for none
+     * @param precompressed     whether {@code .br}/{@code .gz} siblings are served
+     * @param allowListing      whether directories are listed
+     */
+    public AssetsHandler(ResourceManager resourceManager, long cacheSize, long maxCachedFileSize,
+                         Duration cacheTtl, Duration cacheTime, boolean precompressed, boolean allowListing) {
+        this.resourceManager = resourceManager;
+        this.resourceHandler = new ResourceHandler(resourceManager)
+            .setDirectoryListingEnabled(allowListing);
+        this.precompressed = precompressed;
+        this.maxCachedFileSize = cacheSize > 0 ? Math.min(maxCachedFileSize, cacheSize) : -1;
+        this.cacheControl = cacheTime == null ? null : "public, max-age=" + cacheTime.toSeconds();
+        if (cacheTime != null) {
+            resourceHandler.setCacheTime((int) cacheTime.toSeconds());
+        }
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(Math.max(cacheSize, 0))
+            .weigher((String path, CachedAsset[] assets) -> weight(assets))
+            .expireAfterWrite(cacheTtl.toNanoseconds(), TimeUnit.NANOSECONDS)
+            .build();
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final boolean head = Methods.HEAD.equals(exchange.getRequestMethod());
+        if (!head && !Methods.GET.equals(exchange.getRequestMethod())) {
+            dispatch(exchange, resourceHandler);
+            return;
+        }
+
+        final CachedAsset[] assets = cache.getIfPresent(CanonicalPathUtils.canonicalize(exchange.getRelativePath()));
+        if (assets != null) {
+            final int encoding = acceptedEncoding(exchange, assets);
+            if (encoding >= 0) {
+                send(exchange, assets[encoding], !head);
+                return;
+            }
+        }
+
+        dispatch(exchange, missHandler);
+    }
+
+    private static void dispatch(HttpServerExchange exchange, HttpHandler handler) throws Exception {
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(handler);
+        } else {
+            handler.handleRequest(exchange);
+        }
+    }
+
+    private void handleMiss(HttpServerExchange exchange) throws Exception {
+        final String path = CanonicalPathUtils.canonicalize(exchange.getRelativePath());
+
+        int encoding = IDENTITY;
+        Resource resource = null;
+        if (precompressed) {
+            for (int candidate = BROTLI; candidate > IDENTITY && resource == null; candidate--) {
+                if (accepts(exchange, ENCODINGS[candidate])) {
+                    resource = fileResource(path + EXTENSIONS[candidate]);
+                    encoding = candidate;
+                    if (resource == null && maxCachedFileSize > 0) {
+                        cache(path, candidate, CachedAsset.ABSENT);
+                    }
+                }
+            }
+        }
+        if (resource == null) {
+            resource = fileResource(path);
+            encoding = IDENTITY;
+        }
+
+        if (resource == null) {
+            // not found, a directory or a welcome file
+            resourceHandler.handleRequest(exchange);
+            return;
+        }
+
+        final boolean sendContent = !Methods.HEAD.equals(exchange.getRequestMethod());
+        final Long length = resource.getContentLength();
+        if (length != null && length <= maxCachedFileSize) {
+            send(exchange, cache(path, encoding, resource), sendContent);
+        } else if (encoding == IDENTITY) {
+            // ranges and zero copy transfer
+            resourceHandler.handleRequest(exchange);
+        } else {
+            serve(exchange, path, encoding, resource, sendContent);
+        }
+    }
+
+    private Resource fileResource(String path) throws IOException {
+        final Resource resource = resourceManager.getResource(path);
+        return resource == null || resource.isDirectory() ? null : resource;
+    }
+
+    private CachedAsset cache(String path, int encoding, Resource resource) throws IOException {
+        return cache(path, encoding,
+            new CachedAsset(path, encoding, resource, load(resource), cacheControl, precompressed));
+    }
+
+    private CachedAsset cache(String path, int encoding, CachedAsset asset) {
+        cache.asMap().compute(path, (key, assets) -> {
+            CachedAsset[] updated = assets == null ? new CachedAsset[ENCODINGS.length] : assets.clone();
+            updated[encoding] = asset;
+            return updated;
+        });
+        return asset;
+    }
+
+    private void serve(HttpServerExchange exchange, String path, int encoding, Resource resource,
+                       boolean sendContent) {
+        final CachedAsset asset = new CachedAsset(path, encoding, resource, null, cacheControl, precompressed);
+        if (notModified(exchange, asset)) {
+            return;
+        }
+
+        asset.putHeaders(exchange.getResponseHeaders());
+        exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, resource.getContentLength());
+        if (sendContent) {
+            resource.serve(exchange.getResponseSender(), exchange, IoCallback.END_EXCHANGE);
+        } else {
+            exchange.endExchange();
+        }
+    }
+
+    private static void send(HttpServerExchange exchange, CachedAsset asset, boolean sendContent) {
+        if (notModified(exchange, asset)) {
+            return;
+        }
+
+        asset.putHeaders(exchange.getResponseHeaders());
+        exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, asset.content.remaining());
+        if (sendContent) {
+            exchange.getResponseSender().send(asset.content.duplicate());
+        } else {
+            exchange.endExchange();
+        }
+    }
+
+    private static boolean notModified(HttpServerExchange exchange, CachedAsset asset) {
+        if (ETagUtils.handleIfNoneMatch(exchange, asset.etag, false)
+            && DateUtils.handleIfModifiedSince(exchange, asset.lastModified)) {
+            return false;
+        }
+
+        exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+        final HeaderMap headers = exchange.getResponseHeaders();
+        headers.put(Headers.ETAG, asset.etag.toString());
+        if (asset.cacheControl != null) {
+            headers.put(Headers.CACHE_CONTROL, asset.cacheControl);
+        }
+        exchange.endExchange();
+        return true;
+    }
+
+    /**
+     * @return the cached variant to send, or {@code -1} to look the assets up
+     */
+    private int acceptedEncoding(HttpServerExchange exchange, CachedAsset[] assets) {
+        if (precompressed) {
+            for (int candidate = BROTLI; candidate > IDENTITY; candidate--) {
+                if (accepts(exchange, ENCODINGS[candidate])) {
+                    final CachedAsset asset = assets[candidate];
+                    if (asset == null) {
+                        // an accepted variant has not been looked up yet
+                        return -1;
+                    }
+                    if (asset != CachedAsset.ABSENT) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        return assets[IDENTITY] != null ? IDENTITY : -1;
+    }
+
+    /**
+     * @return whether the {@code Accept-Encoding} header lists the encoding, or {@code *}, with a
+     * non-zero {@code q} value; the encoding's own entry prevails over {@code *}
+     */
+    private static boolean accepts(HttpServerExchange exchange, String encoding) {
+        final HeaderValues accept = exchange.getRequestHeaders().get(Headers.ACCEPT_ENCODING);
+        if (accept == null) {
+            return false;
+        }
+        float exact = -1;
+        float wildcard = -1;
+        for (String value : accept) {
+            for (String coding : CODING_SPLITTER.split(value)) {
+                final int semicolon = coding.indexOf(';');
+                final String name = (semicolon < 0 ? coding : coding.substring(0, semicolon)).trim();
+                if (name.equalsIgnoreCase(encoding)) {
+                    exact = quality(coding, semicolon);
+                } else if ("*".equals(name)) {
+                    wildcard = quality(coding, semicolon);
+                }
+            }
+        }
+        return exact >= 0 ? exact > 0 : wildcard > 0;
+    }
+
+    private static float quality(String coding, int semicolon) {
+        if (semicolon < 0) {
+            return 1;
+        }
+        for (String param : PARAM_SPLITTER.split(coding.substring(semicolon + 1))) {
+            if (param.length() > 2 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '=') {
+                try {
+                    return Float.parseFloat(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static ByteBuffer load(Resource resource) throws IOException {
+        final Path file = resource.getFilePath();
+        if (file != null) {
+            try (FileChannel channel = FileChannel.open(file)) {
+                final ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // keep reading
+                }
+                buffer.flip();
+                return buffer;
+            }
+        }
+
+        try (InputStream in = resource.getUrl().openStream()) {
+            final byte[] bytes = ByteStreams.toByteArray(in);
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes).flip();
+            return buffer;
+        }
+    }
+
+    private static int weight(CachedAsset[] assets) {
+        long weight = 0;
+        for (CachedAsset asset : assets) {
+            if (asset != null && asset.content != null) {
+                weight += asset.content.capacity();
+            }
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private static final class CachedAsset {
+        /**
+         * Marks a precompressed sibling known not to exist.
+         */
+        static final CachedAsset ABSENT = new CachedAsset();
+
+        private final ByteBuffer content;
+        private final ETag etag;
+        private final Date lastModified;
+        private final String lastModifiedString;
+        private final String contentType;
+        private final String contentEncoding;
+        private final String cacheControl;
+        private final boolean vary;
+
+        private CachedAsset() {
+            this.content = null;
+            this.etag = null;
+            this.lastModified = null;
+            this.lastModifiedString = null;
+            this.contentType = null;
+            this.contentEncoding = null;
+            this.cacheControl = null;
+            this.vary = false;
+        }
+
+        CachedAsset(String path, int encoding, Resource resource, ByteBuffer content,
+                    String cacheControl, boolean vary) {
+            this.content = content;
+            this.lastModified = resource.getLastModified();
+            this.lastModifiedString = lastModified == null ? null : DateUtils.toDateString(lastModified);
+            this.etag = new ETag(false, Long.toHexString(resource.getContentLength())
+                + '-' + Long.toHexString(lastModified == null ? 0 : lastModified.getTime())
+                + EXTENSIONS[encoding]);
+            this.contentType = contentType(path);
+            this.contentEncoding = ENCODINGS[encoding];
+            this.cacheControl = cacheControl;
+            this.vary = vary;
+        }
+
+        void putHeaders(HeaderMap headers) {
+            headers.put(Headers.ETAG, etag.toString());
+            if (contentType != null) {
+                headers.put(Headers.CONTENT_TYPE, contentType);
+            }
+            if (contentEncoding != null) {
+                headers.put(Headers.CONTENT_ENCODING, contentEncoding);
+            }
+            if (vary) {
+                headers.put(Headers.VARY, Headers.ACCEPT_ENCODING_STRING);
+            }
+            if (lastModifiedString != null) {
+                headers.put(Headers.LAST_MODIFIED, lastModifiedString);
+            }
+            if (cacheControl != null) {
+                headers.put(Headers.CACHE_CONTROL, cacheControl);
+            }
+        }
+
+        private static String contentType(String path) {
+            final int dot = path.lastIndexOf('.');
+            return dot < 0 ? null : MimeMappings.DEFAULT.getMimeType(path.substring(dot + 1));
+        }
+    }
+}
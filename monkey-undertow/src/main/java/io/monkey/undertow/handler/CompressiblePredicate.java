@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import io.undertow.predicate.Predicate;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decides from the response headers whether a response is worth compressing: it must not be
+ * encoded already, its {@code Content-Type} must be in the allow-list and its
+ * {@code Content-Length}, when known, must reach the minimum size. Streamed responses of unknown
+ * length are compressed, except server-sent event streams, whose events must reach the client as
+ * they are flushed and which would hold a deflater per connection.
+ * <p>
+ * Allow-list entries are either full media types such as {@code application/json} or wildcards
+ * such as {@code text/*}.
+ */
+public class CompressiblePredicate implements Predicate {
+
+    private static final String EVENT_STREAM = "text/event-stream";
+
+    private final long minSize;
+    private final Set<String> mimeTypes = new HashSet<>();
+    private final List<String> mimePrefixes = new ArrayList<>();
+
+    public CompressiblePredicate(long minSize, Iterable<String> mimeTypes) {
+        this.minSize = minSize;
+        for (String mimeType : mimeTypes) {
+            String type = mimeType.trim().toLowerCase(Locale.ENGLISH);
+            if (type.endsWith("/*")) {
+                mimePrefixes.add(type.substring(0, type.length() - 1));
+            } else {
+                this.mimeTypes.add(type);
+            }
+        }
+    }
+
+    @Override
+    public boolean resolve(HttpServerExchange exchange) {
+        final HeaderMap headers = exchange.getResponseHeaders();
+        if (headers.contains(Headers.CONTENT_ENCODING)) {
+            return false;
+        }
+
+        final String length = headers.getFirst(Headers.CONTENT_LENGTH);
+        if (length != null && Long.parseLong(length) < minSize) {
+            return false;
+        }
+
+        final String contentType = headers.getFirst(Headers.CONTENT_TYPE);
+        return contentType != null && isCompressible(contentType);
+    }
+
+    private boolean isCompressible(String contentType) {
+        final int semicolon = contentType.indexOf(';');
+        final String type = (semicolon < 0 ? contentType : contentType.substring(0, semicolon))
+            .trim().toLowerCase(Locale.ENGLISH);
+        if (EVENT_STREAM.equals(type)) {
+            return false;
+        }
+        if (mimeTypes.contains(type)) {
+            return true;
+        }
+        for (String prefix : mimePrefixes) {
+            if (type.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import io.monkey.util.Deadline;
+import io.monkey.util.Duration;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HttpString;
+import io.undertow.util.PathMatcher;
+import io.undertow.util.StatusCodes;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives every request a time budget and stores its {@link Deadline} in the exchange.
+ * <p>
+ * The budget is the remaining milliseconds sent by the caller in the deadline header, capped by the
+ * budget of the longest matching route prefix or the default one. The deadline counts from the
+ * start of the request. Requests whose budget ran out before they were handled, e.g. while queued
+ * for a worker, are answered {@code 503}. The work itself runs after a dispatch, out of reach of
+ * this handler, so overrunning the deadline is answered by the dispatched layer, e.g. with
+ * {@code 504} by the JAX-RS exception mappers.
+ */
+public class DeadlineHandler implements HttpHandler {
+
+    public static final AttachmentKey<Deadline> DEADLINE = AttachmentKey.create(Deadline.class);
+
+    private final HttpString header;
+    private final Duration defaultBudget;
+    private final PathMatcher<Duration> routeBudgets = new PathMatcher<>();
+    private final HttpHandler next;
+
+    /**
+     * @param header        the header carrying the caller's budget in milliseconds
+     * @param defaultBudget the budget of requests without a route budget, or {@code null}
+     * @param routeBudgets  the budgets by path prefix
+     */
+    public DeadlineHandler(String header, Duration defaultBudget, Map<String, Duration> routeBudgets,
+                           HttpHandler next) {
+        this.header = HttpString.tryFromString(header);
+        this.defaultBudget = defaultBudget;
+        routeBudgets.forEach(this.routeBudgets::addPrefixPath);
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        final Deadline deadline = deadline(exchange);
+        if (deadline == null) {
+            next.handleRequest(exchange);
+            return;
+        }
+
+        if (deadline.isExpired()) {
+            exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+            exchange.endExchange();
+            return;
+        }
+
+        exchange.putAttachment(DEADLINE, deadline);
+        next.handleRequest(exchange);
+    }
+
+    private Deadline deadline(HttpServerExchange exchange) {
+        long budgetNanos = -1;
+
+        final Duration routeBudget = routeBudgets.match(exchange.getRelativePath()).getValue();
+        final Duration budget = routeBudget == null ? defaultBudget : routeBudget;
+        if (budget != null) {
+            budgetNanos = budget.toNanoseconds();
+        }
+
+        final String value = exchange.getRequestHeaders().getFirst(header);
+        if (value != null) {
+            try {
+                final long requested = TimeUnit.MILLISECONDS.toNanos(Math.max(0, Long.parseLong(value.trim())));
+                budgetNanos = budgetNanos < 0 ? requested : Math.min(budgetNanos, requested);
+            } catch (NumberFormatException e) {
+                // ignore malformed budgets
+            }
+        }
+
+        if (budgetNanos < 0) {
+            return null;
+        }
+
+        final long start = exchange.getRequestStartTime();
+        return Deadline.at((start > 0 ? start : System.nanoTime()) + budgetNanos);
+    }
+}
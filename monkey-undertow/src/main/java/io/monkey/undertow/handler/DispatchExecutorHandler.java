@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Makes {@code executor} the default executor of every {@link HttpServerExchange#dispatch} which
+ * does not name one, in place of the XNIO worker pool.
+ */
+public class DispatchExecutorHandler implements HttpHandler {
+
+    private final Executor executor;
+    private final HttpHandler next;
+
+    public DispatchExecutorHandler(Executor executor, HttpHandler next) {
+        this.executor = executor;
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        exchange.setDispatchExecutor(executor);
+        next.handleRequest(exchange);
+    }
+}
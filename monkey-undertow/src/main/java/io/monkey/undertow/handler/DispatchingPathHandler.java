@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.PathHandler;
+
+/**
+ * A {@link PathHandler} which keeps {@link NonBlocking} handlers on the I/O thread and dispatches
+ * every other handler to the worker pool.
+ */
+public class DispatchingPathHandler extends PathHandler {
+
+    @Override
+    public synchronized PathHandler addPrefixPath(String path, HttpHandler handler) {
+        return super.addPrefixPath(path, dispatching(handler));
+    }
+
+    @Override
+    public synchronized PathHandler addExactPath(String path, HttpHandler handler) {
+        return super.addExactPath(path, dispatching(handler));
+    }
+
+    /**
+     * Returns the handler itself when it is {@link NonBlocking}, otherwise a handler which runs it
+     * on a worker thread.
+     */
+    public static HttpHandler dispatching(HttpHandler handler) {
+        if (handler.getClass().isAnnotationPresent(NonBlocking.class)) {
+            return handler;
+        }
+        return new WorkerDispatchHandler(handler);
+    }
+
+    private static final class WorkerDispatchHandler implements HttpHandler {
+
+        private final HttpHandler next;
+
+        WorkerDispatchHandler(HttpHandler next) {
+            this.next = next;
+        }
+
+        @Override
+        public void handleRequest(HttpServerExchange exchange) throws Exception {
+            if (exchange.isInIoThread()) {
+                exchange.dispatch(next);
+                return;
+            }
+            next.handleRequest(exchange);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.monkey.metrics.HdrHistogramReservoir;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.PathTemplateMatch;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A handler which records a latency timer per matched route and response status class, and the
+ * number of requests in flight.
+ * <p>
+ * The route is taken, in order, from the {@link #ROUTE} attachment (set by downstream layers which
+ * know the real path template, e.g. the JAX-RS resource method), the Undertow
+ * {@link PathTemplateMatch}, or the path resolved by the {@code PathHandler}. Once a route has been
+ * seen, recording a request only touches preallocated counters and histograms; the number of
+ * distinct routes is capped by {@code maxRoutes}, further routes are recorded as {@code other}.
+ * <p>
+ * Durations are measured from {@link HttpServerExchange#getRequestStartTime()}, so the server has
+ * to be built with {@code UndertowOptions.RECORD_REQUEST_START_TIME}.
+ */
+public class InstrumentedHandler implements HttpHandler, ExchangeCompletionListener {
+
+    /**
+     * The route name under which an exchange is recorded.
+     */
+    public static final AttachmentKey<String> ROUTE = AttachmentKey.create(String.class);
+
+    private static final String OTHER_ROUTE = "other";
+    private static final String[] STATUS_CLASSES = {"other", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final HttpHandler next;
+    private final MetricRegistry metrics;
+    private final String prefix;
+    private final int maxRoutes;
+
+    private final LongAdder activeRequests = new LongAdder();
+    private final ConcurrentMap<String, RouteTimers> routes = new ConcurrentHashMap<>();
+
+    public InstrumentedHandler(MetricRegistry metrics, int maxRoutes, HttpHandler next) {
+        this(metrics, name(InstrumentedHandler.class), maxRoutes, next);
+    }
+
+    public InstrumentedHandler(MetricRegistry metrics, String prefix, int maxRoutes, HttpHandler next) {
+        this.next = next;
+        this.metrics = metrics;
+        this.prefix = prefix;
+        this.maxRoutes = maxRoutes;
+
+        metrics.register(name(prefix, "active-requests"), (Gauge<Long>) activeRequests::sum);
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        activeRequests.increment();
+        exchange.addExchangeCompleteListener(this);
+        next.handleRequest(exchange);
+    }
+
+    @Override
+    public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+        try {
+            activeRequests.decrement();
+
+            final long startTime = exchange.getRequestStartTime();
+            if (startTime > 0) {
+                routeTimers(routeOf(exchange))
+                    .timer(exchange.getStatusCode() / 100)
+                    .update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            nextListener.proceed();
+        }
+    }
+
+    public long getActiveRequests() {
+        return activeRequests.sum();
+    }
+
+    private static String routeOf(HttpServerExchange exchange) {
+        String route = exchange.getAttachment(ROUTE);
+        if (route != null) {
+            return route;
+        }
+
+        PathTemplateMatch match = exchange.getAttachment(PathTemplateMatch.ATTACHMENT_KEY);
+        if (match != null) {
+            return match.getMatchedTemplate();
+        }
+
+        route = exchange.getResolvedPath();
+        return route.isEmpty() ? "/" : route;
+    }
+
+    private RouteTimers routeTimers(String route) {
+        RouteTimers timers = routes.get(route);
+        if (timers != null) {
+            return timers;
+        }
+
+        if (routes.size() >= maxRoutes) {
+            route = OTHER_ROUTE;
+        }
+
+        return routes.computeIfAbsent(route, RouteTimers::new);
+    }
+
+    private final class RouteTimers {
+
+        private final String route;
+        private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>(STATUS_CLASSES.length);
+
+        RouteTimers(String route) {
+            this.route = route;
+        }
+
+        Timer timer(int statusClass) {
+            final int index = statusClass > 0 && statusClass < STATUS_CLASSES.length ? statusClass : 0;
+
+            Timer timer = timers.get(index);
+            if (timer == null) {
+                timer = metrics.timer(name(prefix, "requests", route, STATUS_CLASSES[index]),
+                    () -> new Timer(new HdrHistogramReservoir()));
+                timers.set(index, timer);
+            }
+            return timer;
+        }
+    }
+}
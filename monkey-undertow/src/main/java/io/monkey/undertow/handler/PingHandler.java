@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Answers {@code pong} to {@code GET} and {@code HEAD} requests straight from the I/O thread.
+ */
+@NonBlocking
+public class PingHandler implements HttpHandler {
+
+    private static final String PONG = "pong";
+    private static final String CACHE_CONTROL = "must-revalidate,no-cache,no-store";
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) {
+        if (!Methods.GET.equals(exchange.getRequestMethod()) && !Methods.HEAD.equals(exchange.getRequestMethod())) {
+            exchange.setStatusCode(StatusCodes.METHOD_NOT_ALLOWED);
+            exchange.getResponseHeaders().put(Headers.ALLOW, "GET, HEAD");
+            exchange.endExchange();
+            return;
+        }
+
+        exchange.getResponseHeaders()
+            .put(Headers.CONTENT_TYPE, "text/plain;charset=UTF-8")
+            .put(Headers.CACHE_CONTROL, CACHE_CONTROL);
+        exchange.getResponseSender().send(PONG);
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2018-2023 Monkey, Inc
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.monkey.undertow.handler;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.protocol.http.HttpContinue;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Caches the bodies of idempotent {@code GET} responses the application declared cacheable by
+ * setting {@link #TTL} on the exchange, and serves later requests for them from the I/O thread.
+ * <p>
+ * Entries are keyed on the request URI, query string, {@code Accept} header and the values of the
+ * request headers named by the response's {@code Vary} header; {@code Accept} is always part of the
+ * key since the application negotiates the media type without announcing it in {@code Vary}. Once a URI is known to be cacheable, concurrent misses are
+ * coalesced: one request computes the response and the others wait for it to be cached.
+ * Requests carrying credentials, either {@code Authorization} or cookies, and responses setting
+ * cookies are never cached. Only the
+ * representation headers of a response are stored, per-request ones such as {@code X-Request-Id}
+ * are not replayed.
+ */
+public class ResponseCacheHandler implements HttpHandler {
+
+    /**
+     * How long the response may be cached, in nanoseconds; set by the application.
+     */
+    public static final AttachmentKey<Long> TTL = AttachmentKey.create(Long.class);
+
+    private static final String[] NO_NAMES = new String[0];
+    private static final String ACCEPT = Headers.ACCEPT_STRING;
+
+    private static final Splitter VARY_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private static final ImmutableSet<HttpString> REPRESENTATION_HEADERS = ImmutableSet.of(
+        Headers.CONTENT_TYPE, Headers.CONTENT_ENCODING, Headers.CONTENT_LANGUAGE, Headers.VARY, Headers.ETAG,
+        Headers.CACHE_CONTROL, Headers.LAST_MODIFIED, Headers.EXPIRES);
+
+    private final HttpHandler next;
+    private final int maxEntrySize;
+    private final Cache<String, CachedResponse> responses;
+    private final Cache<String, String[]> varies;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter coalesced;
+
+    public ResponseCacheHandler(long maxSize, int maxEntrySize, MetricRegistry metrics, HttpHandler next) {
+        this.next = next;
+        this.maxEntrySize = maxEntrySize;
+        this.responses = Caffeine.newBuilder()
+            .maximumWeight(maxSize)
+            .weigher((String key, CachedResponse response) -> key.length() + response.body.capacity())
+            .expireAfter(new Expiry<String, CachedResponse>() {
+                @Override
+                public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+                    return value.ttl;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, CachedResponse value, long currentTime, long currentDuration) {
+                    return value.ttl;
+                }
+
+                @Override
+                public long expireAfterRead(String key, CachedResponse value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+        this.varies = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+        this.hits = metrics.meter(name(ResponseCacheHandler.class, "hits"));
+        this.misses = metrics.meter(name(ResponseCacheHandler.class, "misses"));
+        this.coalesced = metrics.meter(name(ResponseCacheHandler.class, "coalesced"));
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!Methods.GET.equals(exchange.getRequestMethod())
+            || exchange.getRequestHeaders().contains(Headers.AUTHORIZATION)
+            || exchange.getRequestHeaders().contains(Headers.COOKIE)
+            || HttpContinue.requiresContinueResponse(exchange)) {
+            next.handleRequest(exchange);
+            return;
+        }
+
+        final String uri = uriKey(exchange);
+        final String[] vary = varies.getIfPresent(uri);
+        if (vary != null) {
+            final String key = variantKey(uri, vary, exchange);
+            final CachedResponse cached = responses.getIfPresent(key);
+            if (cached != null) {
+                hits.mark();
+                cached.send(exchange);
+                return;
+            }
+
+            // known to be cacheable: let a single request compute it
+            final Flight flight = new Flight();
+            final Flight leader = flights.putIfAbsent(key, flight);
+            if (leader != null) {
+                coalesced.mark();
+                exchange.dispatch(SameThreadExecutor.INSTANCE, () -> leader.await(exchange));
+                return;
+            }
+            misses.mark();
+            record(exchange, uri, key, flight);
+            return;
+        }
+
+        misses.mark();
+        record(exchange, uri, null, null);
+    }
+
+    private void record(HttpServerExchange exchange, String uri, String key, Flight flight) throws Exception {
+        final CapturingConduit[] capture = new CapturingConduit[1];
+        exchange.addResponseWrapper((factory, ex) -> {
+            // TTL is set before the response channel is created, responses without it are not copied
+            if (ex.getAttachment(TTL) == null) {
+                return factory.create();
+            }
+            // headers are snapshot before the conduits below, such as compression, amend them
+            final HeaderMap headers = copyHeaders(ex.getResponseHeaders());
+            return capture[0] = new CapturingConduit(headers, factory.create(), maxEntrySize);
+        });
+        exchange.addExchangeCompleteListener(new ExchangeCompletionListener() {
+            @Override
+            public void exchangeEvent(HttpServerExchange ex, NextListener nextListener) {
+                boolean cached = false;
+                try {
+                    cached = store(ex, uri, capture[0]);
+                } finally {
+                    if (flight != null) {
+                        flights.remove(key, flight);
+                        flight.land(cached);
+                    }
+                    nextListener.proceed();
+                }
+            }
+        });
+        next.handleRequest(exchange);
+    }
+
+    private boolean store(HttpServerExchange exchange, String uri, CapturingConduit capture) {
+        final Long ttl = exchange.getAttachment(TTL);
+        if (ttl == null || ttl <= 0 || capture == null || !capture.isComplete()
+            || exchange.getStatusCode() != StatusCodes.OK || exchange.getResponseHeaders().contains(Headers.SET_COOKIE)) {
+            return false;
+        }
+
+        final String[] vary = varyNames(capture.headers.get(Headers.VARY));
+        if (vary == null) {
+            return false;
+        }
+        varies.put(uri, vary);
+
+        final CachedResponse cached = new CachedResponse(capture.headers, capture.body(), ttl);
+        responses.put(variantKey(uri, vary, exchange), cached);
+        return true;
+    }
+
+    private static String uriKey(HttpServerExchange exchange) {
+        final String query = exchange.getQueryString();
+        return query == null || query.isEmpty() ? exchange.getRequestURI() : exchange.getRequestURI() + '?' + query;
+    }
+
+    private static String variantKey(String uri, String[] vary, HttpServerExchange exchange) {
+        final StringBuilder key = new StringBuilder(uri);
+        for (String name : vary) {
+            final HeaderValues values = exchange.getRequestHeaders().get(name);
+            key.append('\n');
+            if (values != null) {
+                for (String value : values) {
+                    key.append(value).append(',');
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the request headers a response varies on, always including {@code Accept}, or
+     * {@code null} for {@code Vary: *}
+     */
+    private static String[] varyNames(HeaderValues varyHeader) {
+        final List<String> names = new ArrayList<>();
+        names.add(ACCEPT);
+        if (varyHeader != null) {
+            for (String value : varyHeader) {
+                for (String name : VARY_SPLITTER.split(value)) {
+                    if ("*".equals(name)) {
+                        return null;
+                    }
+                    if (!ACCEPT.equalsIgnoreCase(name)) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        final String[] sorted = names.toArray(NO_NAMES);
+        Arrays.sort(sorted, String.CASE_INSENSITIVE_ORDER);
+        return sorted;
+    }
+
+    private static HeaderMap copyHeaders(HeaderMap headers) {
+        final HeaderMap copy = new HeaderMap();
+        for (HeaderValues header : headers) {
+            if (REPRESENTATION_HEADERS.contains(header.getHeaderName())) {
+                copy.putAll(header.getHeaderName(), header);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * The request computing a response for concurrent misses of the same key.
+     */
+    private final class Flight {
+        private final List<HttpServerExchange> waiters = new ArrayList<>();
+        private boolean landed;
+        private boolean cached;
+
+        void await(HttpServerExchange exchange) {
+            synchronized (this) {
+                if (!landed) {
+                    waiters.add(exchange);
+                    return;
+                }
+            }
+            resume(exchange);
+        }
+
+        void land(boolean cached) {
+            final List<HttpServerExchange> waiting;
+            synchronized (this) {
+                this.landed = true;
+                this.cached = cached;
+                waiting = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            waiting.forEach(this::resume);
+        }
+
+        private void resume(HttpServerExchange exchange) {
+            // a cached response is served by looking it up again, otherwise each waiter computes its own
+            exchange.dispatch(exchange.getIoThread(), cached ? ResponseCacheHandler.this : next);
+        }
+    }
+
+    private static final class CachedResponse {
+        private final HeaderMap headers;
+        private final ByteBuffer body;
+        private final long ttl;
+
+        CachedResponse(HeaderMap headers, ByteBuffer body, long ttl) {
+            this.headers = headers;
+            this.body = body;
+            this.ttl = ttl;
+        }
+
+        void send(HttpServerExchange exchange) {
+            final HeaderMap response = exchange.getResponseHeaders();
+            for (HeaderValues header : headers) {
+                response.putAll(header.getHeaderName(), header);
+            }
+            response.put(Headers.CONTENT_LENGTH, body.remaining());
+            exchange.setStatusCode(StatusCodes.OK);
+            exchange.getResponseSender().send(body.duplicate());
+        }
+    }
+
+    /**
+     * Copies the bytes written to the response, up to a limit.
+     */
+    private static final class CapturingConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+        private final HeaderMap headers;
+        private final int limit;
+        private byte[] bytes = new byte[1024];
+        private int size;
+        private boolean overflow;
+        private boolean complete;
+
+        CapturingConduit(HeaderMap headers, StreamSinkConduit next, int limit) {
+            super(next);
+            this.headers = headers;
+            this.limit = limit;
+        }
+
+        boolean isComplete() {
+            return complete && !overflow;
+        }
+
+        ByteBuffer body() {
+            final ByteBuffer body = ByteBuffer.allocateDirect(size);
+            body.put(bytes, 0, size).flip();
+            return body;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            final int position = src.position();
+            final int written = next.write(src);
+            capture(src, position, written);
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+            final int[] positions = positions(srcs, offs, len);
+            final long written = next.write(srcs, offs, len);
+            capture(srcs, offs, len, positions);
+            return written;
+        }
+
+        @Override
+        public int writeFinal(ByteBuffer src) throws IOException {
+            final int position = src.position();
+            final int written = next.writeFinal(src);
+            capture(src, position, written);
+            if (!src.hasRemaining()) {
+                complete = true;
+            }
+            return written;
+        }
+
+        @Override
+        public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+            final int[] positions = positions(srcs, offs, len);
+            final long written = next.writeFinal(srcs, offs, len);
+            capture(srcs, offs, len, positions);
+            boolean remaining = false;
+            for (int i = offs; i < offs + len; i++) {
+                remaining |= srcs[i].hasRemaining();
+            }
+            if (!remaining) {
+                complete = true;
+            }
+            return written;
+        }
+
+        @Override
+        public long transferFrom(FileChannel src, long position, long count) throws IOException {
+            overflow = true;
+            return next.transferFrom(src, position, count);
+        }
+
+        @Override
+        public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+            overflow = true;
+            return next.transferFrom(source, count, throughBuffer);
+        }
+
+        @Override
+        public void terminateWrites() throws IOException {
+            complete = true;
+            next.terminateWrites();
+        }
+
+        private static int[] positions(ByteBuffer[] srcs, int offs, int len) {
+            final int[] positions = new int[len];
+            for (int i = 0; i < len; i++) {
+                positions[i] = srcs[offs + i].position();
+            }
+            return positions;
+        }
+
+        private void capture(ByteBuffer[] srcs, int offs, int len, int[] positions) {
+            for (int i = 0; i < len; i++) {
+                final ByteBuffer src = srcs[offs + i];
+                capture(src, positions[i], src.position() - positions[i]);
+            }
+        }
+
+        private void capture(ByteBuffer src, int position, long written) {
+            if (overflow || written <= 0) {
+                return;
+            }
+            if (size + written > limit) {
+                overflow = true;
+                bytes = null;
+                return;
+            }
+            final int length = (int) written;
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.min(limit, Math.max(bytes.length * 2, size + length)));
+            }
+            final ByteBuffer slice = src.duplicate();
+            slice.position(position).limit(position + length);
+            slice.get(bytes, size, length);
+            size += length;
+        }
+    }
+}
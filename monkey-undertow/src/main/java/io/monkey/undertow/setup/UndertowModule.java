@@ -15,25 +15,38 @@
 
 package io.monkey.undertow.setup;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.AbstractModule;
 import io.monkey.inject.advise.Advises;
 import io.monkey.inject.advise.ProvidesWithAdvice;
+import io.monkey.lifecycle.ExecutorServiceManager;
+import io.monkey.setup.Environment;
 import io.monkey.undertow.HttpServerFactory;
+import io.monkey.undertow.executor.VirtualThreadPinningMonitor;
+import io.monkey.undertow.executor.VirtualThreads;
+import io.monkey.undertow.handler.ActiveRequestsHandler;
+import io.monkey.undertow.handler.DispatchExecutorHandler;
+import io.monkey.undertow.handler.DispatchingPathHandler;
+import io.monkey.undertow.handler.InstrumentedHandler;
 import io.monkey.undertow.handler.SlowRequestLogHandler;
+import io.monkey.util.Duration;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.handlers.PathHandler;
 import io.undertow.server.handlers.RequestDumpingHandler;
 import io.undertow.server.handlers.RequestLimitingHandler;
 import io.undertow.server.handlers.accesslog.AccessLogHandler;
-import io.undertow.server.handlers.resource.ResourceHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Singleton;
+import java.util.concurrent.ExecutorService;
 import java.util.function.UnaryOperator;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
 /**
  * @author Michael
  * Created at: 2019/1/17 11:14
@@ -48,9 +61,18 @@ public class UndertowModule extends AbstractModule {
         this.serverFactory = serverFactory;
     }
 
+    @Override
+    protected void configure() {
+        bind(HttpServerFactory.class).toInstance(serverFactory);
+    }
+
     @ProvidesWithAdvice
     @Singleton
     PathHandler getPathHandler() {
+        if (serverFactory.getDispatchMode() == HttpServerFactory.DispatchMode.IO) {
+            logger.info("setup path handler with io dispatch mode.");
+            return new DispatchingPathHandler();
+        }
         return new PathHandler();
     }
 
@@ -58,14 +80,13 @@ public class UndertowModule extends AbstractModule {
     UnaryOperator<PathHandler> setupResourceHandler() {
         return (handler) -> {
             if (serverFactory.getAssetsConfig() != null) {
-                HttpHandler resourceHandler = new ResourceHandler.Builder()
-                    .build(ImmutableMap.of("location", serverFactory.getAssetsConfig().getResourcePath(),
-                        "allow-listing", serverFactory.getAssetsConfig().isAllowListing())).wrap(null);
+                HttpHandler resourceHandler = serverFactory.getAssetsConfig().build();
 
                 handler.addPrefixPath(serverFactory.getAssetsConfig().getUriPath(), resourceHandler);
-                logger.info("setup assets http handler at {}, allow-listing={}.",
+                logger.info("setup assets http handler at {}, allow-listing={}, cache-size={}.",
                     serverFactory.getAssetsConfig().getUriPath(),
-                    serverFactory.getAssetsConfig().isAllowListing());
+                    serverFactory.getAssetsConfig().isAllowListing(),
+                    serverFactory.getAssetsConfig().getCacheSize());
             }
             return handler;
         };
@@ -78,9 +99,32 @@ public class UndertowModule extends AbstractModule {
     }
 
     @Advises
-    UnaryOperator<HttpHandler> defaultHandlerChain() {
+    UnaryOperator<HttpHandler> defaultHandlerChain(Environment environment) {
         return handler -> {
-            if (!Strings.isNullOrEmpty(serverFactory.getAccessLog())) {
+            if (serverFactory.getWorkerExecutor() == HttpServerFactory.WorkerExecutor.VIRTUAL) {
+                handler = virtualThreadDispatch(environment, handler);
+            }
+
+            if (serverFactory.getResponseCache() != null) {
+                handler = serverFactory.getResponseCache().build(environment.metrics(), handler);
+                logger.info("setup response cache http handler, max-size={}.",
+                    serverFactory.getResponseCache().getMaxSize());
+            }
+
+            if (serverFactory.getCompression() != null) {
+                handler = serverFactory.getCompression().build(handler);
+                logger.info("setup compression http handler, min-size={}, level={}.",
+                    serverFactory.getCompression().getMinSize(), serverFactory.getCompression().getLevel());
+            }
+
+            if (serverFactory.getAsyncAccessLog() != null) {
+                if (!Strings.isNullOrEmpty(serverFactory.getAccessLog())) {
+                    logger.warn("asyncAccessLog configured, ignoring accessLog={}.", serverFactory.getAccessLog());
+                }
+                handler = serverFactory.getAsyncAccessLog().build(environment, handler);
+                logger.info("setup async access log http handler, format={}.",
+                    serverFactory.getAsyncAccessLog().getFormat());
+            } else if (!Strings.isNullOrEmpty(serverFactory.getAccessLog())) {
                 AccessLogHandler.Builder builder = new AccessLogHandler.Builder();
                 handler = builder.build(ImmutableMap.of("format", serverFactory.getAccessLog())).wrap(handler);
             }
@@ -89,17 +133,65 @@ public class UndertowModule extends AbstractModule {
                 handler = new RequestDumpingHandler(handler);
             }
 
-            if (serverFactory.getMaxConcurrentRequests() > 0) {
-                handler = new RequestLimitingHandler(serverFactory.getMaxConcurrentRequests(),
-                    serverFactory.getMaxRequestsQueue(), handler);
+            if (serverFactory.getAdaptiveLimit() != null) {
+                if (serverFactory.getMaxConcurrentRequests() > 0) {
+                    logger.warn("adaptiveLimit configured, ignoring maxConcurrentRequests={}.",
+                        serverFactory.getMaxConcurrentRequests());
+                }
+                handler = serverFactory.getAdaptiveLimit().build(environment.metrics(), handler);
+                logger.info("setup adaptive concurrency limit http handler, initial-limit={}.",
+                    serverFactory.getAdaptiveLimit().getInitialLimit());
+            } else if (serverFactory.getMaxConcurrentRequests() > 0) {
+                handler = requestLimiting(environment.metrics(), handler);
+            }
+
+            if (serverFactory.getDeadline() != null) {
+                handler = serverFactory.getDeadline().build(handler);
+                logger.info("setup request deadline http handler, header={}, default-budget={}.",
+                    serverFactory.getDeadline().getHeader(), serverFactory.getDeadline().getDefaultBudget());
             }
 
             if (serverFactory.getSlowThreshold() != null) {
                 handler = new SlowRequestLogHandler(serverFactory.getSlowThreshold(), handler);
             }
 
+            if (serverFactory.isInstrumented()) {
+                handler = new InstrumentedHandler(environment.metrics(), serverFactory.getMaxInstrumentedRoutes(), handler);
+                logger.info("setup instrumented http handler, max-routes={}.", serverFactory.getMaxInstrumentedRoutes());
+            }
+
             return handler;
         };
     }
 
+    private HttpHandler virtualThreadDispatch(Environment environment, HttpHandler handler) {
+        if (!VirtualThreads.isSupported()) {
+            logger.warn("virtual threads not supported by java {}, keep worker pool of {} threads.",
+                System.getProperty("java.version"), serverFactory.getWorkerThreads());
+            return handler;
+        }
+
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor("undertow-virtual-");
+        environment.lifecycle().manage(new ExecutorServiceManager(executor, Duration.seconds(5), "undertow-virtual"));
+        environment.lifecycle().manage(new VirtualThreadPinningMonitor(environment.metrics(), Duration.milliseconds(20)));
+
+        logger.info("setup virtual thread worker executor.");
+        return new DispatchExecutorHandler(executor, handler);
+    }
+
+    private HttpHandler requestLimiting(MetricRegistry metrics, HttpHandler handler) {
+        ActiveRequestsHandler active = new ActiveRequestsHandler(handler);
+        RequestLimitingHandler limiting = new RequestLimitingHandler(serverFactory.getMaxConcurrentRequests(),
+            serverFactory.getMaxRequestsQueue(), active);
+        ActiveRequestsHandler admitted = new ActiveRequestsHandler(limiting);
+
+        metrics.register(name(RequestLimitingHandler.class, "active-requests"), (Gauge<Long>) active::getCount);
+        metrics.register(name(RequestLimitingHandler.class, "queued-requests"),
+            (Gauge<Long>) () -> Math.max(0, admitted.getCount() - active.getCount()));
+        metrics.register(name(RequestLimitingHandler.class, "max-concurrent-requests"),
+            (Gauge<Integer>) () -> limiting.getRequestLimit().getMaximumConcurrentRequests());
+
+        return admitted;
+    }
+
 }
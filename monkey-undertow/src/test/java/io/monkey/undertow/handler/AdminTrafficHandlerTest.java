@@ -0,0 +1,45 @@
+package io.monkey.undertow.handler;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdminTrafficHandlerTest {
+    private static final Set<String> ROOT = ImmutableSet.of("/");
+    private static final Set<String> API = ImmutableSet.of("/", "/api");
+
+    @Test
+    public void matchesALeadingAdminSegment() throws Exception {
+        assertThat(AdminTrafficHandler.isAdmin("/__admin", ROOT))
+            .isTrue();
+        assertThat(AdminTrafficHandler.isAdmin("/__admin/ping", ROOT))
+            .isTrue();
+    }
+
+    @Test
+    public void matchesTheAdminSegmentOfAContextPath() throws Exception {
+        assertThat(AdminTrafficHandler.isAdmin("/api/__admin/ping", API))
+            .isTrue();
+        assertThat(AdminTrafficHandler.isAdmin("/api/__admin/ping", ROOT))
+            .isFalse();
+    }
+
+    @Test
+    public void ignoresNestedAdminSegments() throws Exception {
+        assertThat(AdminTrafficHandler.isAdmin("/users/__admin/ping", ROOT))
+            .isFalse();
+        assertThat(AdminTrafficHandler.isAdmin("/api/users/__admin/ping", API))
+            .isFalse();
+    }
+
+    @Test
+    public void ignoresSegmentsMerelyStartingWithAdmin() throws Exception {
+        assertThat(AdminTrafficHandler.isAdmin("/__administrators", ROOT))
+            .isFalse();
+        assertThat(AdminTrafficHandler.isAdmin("/apiv2/__admin", API))
+            .isFalse();
+    }
+}
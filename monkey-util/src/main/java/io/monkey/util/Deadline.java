@@ -0,0 +1,132 @@
+package io.monkey.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which the work of a request must be done, on the {@link System#nanoTime()}
+ * clock.
+ * <p>
+ * The deadline of the current request is attached to the thread serving it, so data access and
+ * RPC clients can derive their own timeouts from {@link #current()} without threading it through
+ * every call.
+ */
+public final class Deadline implements Comparable<Deadline> {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long nanoTime;
+
+    private Deadline(long nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    public static Deadline at(long nanoTime) {
+        return new Deadline(nanoTime);
+    }
+
+    public static Deadline after(long amount, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(amount));
+    }
+
+    public static Deadline after(Duration budget) {
+        return after(budget.getQuantity(), budget.getUnit());
+    }
+
+    /**
+     * @return the deadline attached to the current thread, or {@code null}
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attaches a deadline to the current thread until the returned scope is closed. Closing the
+     * scope from another thread, e.g. one completing an asynchronous response, does nothing.
+     */
+    public static Scope attach(Deadline deadline) {
+        final Thread owner = Thread.currentThread();
+        final Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        return () -> {
+            if (Thread.currentThread() != owner) {
+                return;
+            }
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Removes whatever deadline is attached to the current thread, such as one left behind by a
+     * request which completed asynchronously.
+     */
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the time left, never negative
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(Math.max(0, nanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the time left in whole seconds, rounded up, e.g. for JDBC query timeouts
+     */
+    public int remainingSeconds() {
+        final long nanos = Math.max(0, nanoTime - System.nanoTime());
+        return (int) Math.min(Integer.MAX_VALUE, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public boolean isExpired() {
+        return nanoTime - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public void check() {
+        if (isExpired()) {
+            throw new DeadlineExceededException();
+        }
+    }
+
+    /**
+     * @return the earlier of this deadline and {@code other}
+     */
+    public Deadline min(Deadline other) {
+        return other == null || compareTo(other) <= 0 ? this : other;
+    }
+
+    @Override
+    public int compareTo(Deadline other) {
+        return Long.compare(nanoTime - other.nanoTime, 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || (obj instanceof Deadline && ((Deadline) obj).nanoTime == nanoTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(nanoTime);
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{remaining=" + remaining(TimeUnit.MILLISECONDS) + "ms}";
+    }
+
+    /**
+     * Restores the previously attached deadline when closed.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,15 @@
+package io.monkey.util;
+
+/**
+ * Thrown when the {@link Deadline} of a request has passed before its work completed.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException() {
+        super("request deadline exceeded");
+    }
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
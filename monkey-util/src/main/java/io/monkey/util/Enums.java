@@ -22,15 +22,8 @@ public class Enums {
      */
     @Nullable
     public static Enum<?> fromStringFuzzy(String value, Enum<?>[] constants) {
-        final String text = value
-                .replace(" ", "")
-                .replace("\n", "")
-                .replace("\r", "")
-                .replace("\t", "")
-                .replace('-', '_')
-                .replace('.', '_');
         for (Enum<?> constant : constants) {
-            if (constant.name().equalsIgnoreCase(text)) {
+            if (matchesFuzzy(value, constant.name())) {
                 return constant;
             }
         }
@@ -47,4 +40,29 @@ public class Enums {
         return null;
     }
 
+    /**
+     * Compares the value to the name as {@code equalsIgnoreCase} would after normalizing the value,
+     * without building the normalized string.
+     */
+    private static boolean matchesFuzzy(String value, String name) {
+        int j = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                continue;
+            }
+            if (c == '-' || c == '.') {
+                c = '_';
+            }
+            if (j == name.length()) {
+                return false;
+            }
+            final char n = name.charAt(j++);
+            if (c != n && Character.toUpperCase(c) != Character.toUpperCase(n)
+                    && Character.toLowerCase(c) != Character.toLowerCase(n)) {
+                return false;
+            }
+        }
+        return j == name.length();
+    }
 }
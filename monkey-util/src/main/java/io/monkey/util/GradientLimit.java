@@ -0,0 +1,90 @@
+package io.monkey.util;
+
+/**
+ * A concurrency limit following the observed latency, in the style of the gradient (TCP Vegas
+ * like) algorithms.
+ * <p>
+ * Each {@link #update(double, int) update} compares the average latency of a sample window to a
+ * slowly moving long-term average: while they stay within {@code rttTolerance} of each other the
+ * limit grows by roughly {@code sqrt(limit)}, when the short-term latency rises the limit shrinks
+ * proportionally, by half at most. The limit only grows when the window actually used at least
+ * half of it.
+ * <p>
+ * Not thread safe, updates must be serialized by the caller.
+ */
+public final class GradientLimit {
+
+    /**
+     * Decay of the long-term latency average per update.
+     */
+    private static final double LONG_RTT_DECAY = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+
+    private int limit;
+    private double longRtt;
+
+    /**
+     * @param initialLimit the limit to start with, between {@code minLimit} and {@code maxLimit}
+     * @param minLimit     the lower bound of the limit
+     * @param maxLimit     the upper bound of the limit
+     * @param smoothing    the weight (0..1] of a newly computed limit against the current one
+     * @param rttTolerance how much the short-term latency may exceed the long-term one before the
+     *                     limit shrinks
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double rttTolerance) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid limits: " + minLimit + " <= " + initialLimit
+                + " <= " + maxLimit + " does not hold");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param shortRtt     the average latency of the window, in any unit as long as it is always
+     *                     the same
+     * @param peakInFlight the highest number of requests in flight during the window
+     * @return the updated limit
+     */
+    public int update(double shortRtt, int peakInFlight) {
+        if (shortRtt <= 0) {
+            return limit;
+        }
+
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt = longRtt * (1 - LONG_RTT_DECAY) + shortRtt * LONG_RTT_DECAY;
+        }
+
+        // latency dropped well below the baseline: let the baseline catch up instead of
+        // pinning the limit to its maximum
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        final int current = limit;
+        final double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / shortRtt));
+        double newLimit = current * gradient + Math.sqrt(current);
+
+        // the application did not use the limit, growing it would be based on no evidence
+        if (peakInFlight < current / 2) {
+            newLimit = Math.min(newLimit, current);
+        }
+
+        newLimit = current * (1 - smoothing) + newLimit * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, (int) newLimit));
+        return limit;
+    }
+}
@@ -0,0 +1,82 @@
+package io.monkey.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DeadlineTest {
+    @Test
+    public void hasRemainingTime() throws Exception {
+        final Deadline deadline = Deadline.after(Duration.seconds(10));
+
+        assertThat(deadline.isExpired())
+            .isFalse();
+        assertThat(deadline.remaining(TimeUnit.SECONDS))
+            .isBetween(9L, 10L);
+        assertThat(deadline.remainingSeconds())
+            .isEqualTo(10);
+    }
+
+    @Test
+    public void expires() throws Exception {
+        final Deadline deadline = Deadline.at(System.nanoTime() - 1);
+
+        assertThat(deadline.isExpired())
+            .isTrue();
+        assertThat(deadline.remaining(TimeUnit.MILLISECONDS))
+            .isZero();
+        assertThatThrownBy(deadline::check)
+            .isInstanceOf(DeadlineExceededException.class);
+    }
+
+    @Test
+    public void picksTheEarlierDeadline() throws Exception {
+        final Deadline early = Deadline.after(1, TimeUnit.SECONDS);
+        final Deadline late = Deadline.after(1, TimeUnit.MINUTES);
+
+        assertThat(early.min(late))
+            .isSameAs(early);
+        assertThat(late.min(early))
+            .isSameAs(early);
+        assertThat(late.min(null))
+            .isSameAs(late);
+    }
+
+    @Test
+    public void attachesToTheCurrentThread() throws Exception {
+        final Deadline outer = Deadline.after(1, TimeUnit.MINUTES);
+        final Deadline inner = Deadline.after(1, TimeUnit.SECONDS);
+
+        assertThat(Deadline.current())
+            .isNull();
+        try (Deadline.Scope ignored = Deadline.attach(outer)) {
+            try (Deadline.Scope ignored2 = Deadline.attach(inner)) {
+                assertThat(Deadline.current())
+                    .isSameAs(inner);
+            }
+            assertThat(Deadline.current())
+                .isSameAs(outer);
+        }
+        assertThat(Deadline.current())
+            .isNull();
+    }
+
+    @Test
+    public void ignoresScopesClosedByOtherThreads() throws Exception {
+        final Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        final Deadline.Scope scope = Deadline.attach(deadline);
+
+        final Thread other = new Thread(scope::close);
+        other.start();
+        other.join();
+        assertThat(Deadline.current())
+            .isSameAs(deadline);
+
+        Deadline.detach();
+        assertThat(Deadline.current())
+            .isNull();
+    }
+}
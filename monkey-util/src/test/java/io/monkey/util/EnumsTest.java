@@ -38,6 +38,8 @@ public class EnumsTest {
                 {" FFmpeg ", VideoFormat.FFMPEG},
                 {"MPEG-DASH", VideoFormat.MPEG_DASH},
                 {"h.264", VideoFormat.H_264},
+                {"\tmpeg.Dash\n", VideoFormat.MPEG_DASH},
+                {"MPEG", null},
                 {"QuickTime", VideoFormat.HDMOV},
                 {"[OGG]", null},
                 {"FLV", null},
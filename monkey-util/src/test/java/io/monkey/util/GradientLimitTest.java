@@ -0,0 +1,75 @@
+package io.monkey.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GradientLimitTest {
+    @Test
+    public void growsWhileLatencyIsSteady() throws Exception {
+        final GradientLimit limit = new GradientLimit(100, 1, 1000, 1.0, 1.5);
+
+        assertThat(limit.update(10, 100))
+            .isEqualTo(110);
+        assertThat(limit.update(10, 110))
+            .isEqualTo(120);
+    }
+
+    @Test
+    public void shrinksWhenLatencyRises() throws Exception {
+        final GradientLimit limit = new GradientLimit(100, 1, 1000, 1.0, 1.0);
+        limit.update(10, 100);
+
+        // the baseline moves to 10.5, the gradient is 10.5 / 20
+        assertThat(limit.update(20, 110))
+            .isEqualTo(68);
+    }
+
+    @Test
+    public void shrinksByHalfAtMost() throws Exception {
+        final GradientLimit limit = new GradientLimit(100, 1, 1000, 1.0, 1.0);
+        limit.update(10, 100);
+
+        assertThat(limit.update(1000, 110))
+            .isEqualTo(65);
+    }
+
+    @Test
+    public void doesNotGrowWhenTheLimitIsUnused() throws Exception {
+        final GradientLimit limit = new GradientLimit(100, 1, 1000, 1.0, 1.5);
+
+        assertThat(limit.update(10, 49))
+            .isEqualTo(100);
+    }
+
+    @Test
+    public void smoothsTheUpdates() throws Exception {
+        final GradientLimit limit = new GradientLimit(100, 1, 1000, 0.5, 1.5);
+
+        assertThat(limit.update(10, 100))
+            .isEqualTo(105);
+    }
+
+    @Test
+    public void staysWithinItsBounds() throws Exception {
+        final GradientLimit growing = new GradientLimit(100, 1, 105, 1.0, 1.5);
+        final GradientLimit shrinking = new GradientLimit(100, 80, 1000, 1.0, 1.0);
+        shrinking.update(10, 100);
+
+        assertThat(growing.update(10, 100))
+            .isEqualTo(105);
+        assertThat(shrinking.update(1000, 110))
+            .isEqualTo(80);
+    }
+
+    @Test
+    public void rejectsAnInitialLimitOutOfBounds() throws Exception {
+        assertThatThrownBy(() -> new GradientLimit(10, 20, 100, 0.2, 1.5))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GradientLimit(200, 20, 100, 0.2, 1.5))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GradientLimit(20, 50, 10, 0.2, 1.5))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}